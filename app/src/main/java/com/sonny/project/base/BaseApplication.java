@@ -2,14 +2,22 @@ package com.sonny.project.base;
 
 import android.database.sqlite.SQLiteDatabase;
 
-import com.library.base.db.ISQLiteCallBackListener;
+import com.library.base.db.AsyncSQLiteHelper;
+import com.library.base.db.IDBCallBack;
+import com.library.base.db.MigrationCallBackListener;
+import com.library.base.db.SQLiteConfig;
 import com.library.base.db.SQLiteHelper;
 import com.library.location.LocationHelper;
+import com.library.network.HttpUtils;
+import com.library.network.download.DownloadManager;
+import com.library.network.offline.OfflineQueue;
 import com.library.share.ShareHelper;
 import com.library.utils.sp.SPUtils;
 import com.sonny.project.db.DBTable;
 import com.sonny.project.utils.LUtils;
 
+import java.io.File;
+
 /**
  * Created by linqs on 2016/8/7.
  */
@@ -21,6 +29,12 @@ public class BaseApplication extends com.library.base.BaseApplication {
         initSP();
         initLog();
         initDB();
+        initHttp();
+    }
+
+    @Override
+    protected void onIdleInit() {
+        //首屏不需要, 空闲时再初始化
         initLocation();
         initShare();
     }
@@ -33,17 +47,45 @@ public class BaseApplication extends com.library.base.BaseApplication {
         LocationHelper.getInstances().init(getApplicationContext());
     }
 
+    private void initHttp() {
+        //Http磁盘缓存 10M
+        HttpUtils.getInstances().initCache(new File(getCacheDir(), "http"), 10 * 1024 * 1024);
+    }
+
+    /***
+     * 依赖数据库的初始化, 在数据库打开(升级)完成后执行
+     */
+    private void onDBReady() {
+        //恢复未完成的下载
+        DownloadManager.getInstances().init();
+        //离线请求队列, 联网后重发
+        OfflineQueue.getInstances().init(this);
+    }
+
     private void initDB() {
-        SQLiteHelper.getInstances().init(getApplicationContext(), "myDB.db", 1, new ISQLiteCallBackListener() {
+        //WAL模式, UI线程的查询不会被后台写阻塞
+        SQLiteConfig sqLiteConfig = new SQLiteConfig();
+        sqLiteConfig.setWriteAheadLogging(true);
+        sqLiteConfig.setSynchronous(SQLiteConfig.SYNCHRONOUS_NORMAL);
+        //升级时按版本执行addMigrations添加的Migration
+        MigrationCallBackListener migrationCallBackListener = new MigrationCallBackListener() {
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL(DBTable.CREATE_TABLE_SQL);
                 db.execSQL(DBTable.CREATE_INDEX_NAME_SQL);
             }
-
+        };
+        SQLiteHelper.getInstances().init(getApplicationContext(), "myDB.db", 1, sqLiteConfig, migrationCallBackListener);
+        //后台线程提前打开数据库, 升级不阻塞启动; 依赖数据库的初始化等打开后再执行, 否则主线程会等待升级完成
+        AsyncSQLiteHelper.getInstances().prewarm(new IDBCallBack<Integer>() {
             @Override
-            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            public void onSuccess(Integer version) {
+                onDBReady();
+            }
 
+            @Override
+            public void onFailure(Exception e) {
+                LUtils.e("open database failed: " + e.getMessage());
             }
         });
     }
@@ -1,8 +1,7 @@
 package com.sonny.project.db;
 
-import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.SystemClock;
 import android.text.TextUtils;
 import android.view.View;
@@ -10,15 +9,37 @@ import android.widget.EditText;
 
 import com.sonny.project.R;
 import com.library.base.BaseActivity;
+import com.library.base.db.AsyncSQLiteHelper;
+import com.library.base.db.IDBCallBack;
+import com.library.base.db.IReadTask;
+import com.library.base.db.IStatementBinder;
+import com.library.base.db.IWriteTask;
+import com.library.base.db.RowMapper;
 import com.library.base.db.SQLiteHelper;
 import com.library.utils.toast.ToastUtils;
 
+import java.util.Collections;
+
 /**
  * Created by admin on 2016/11/8.
  */
 
 public class DBActivity extends BaseActivity {
 
+    private static final RowMapper<String> NAME_MAPPER = new RowMapper<String>(DBTable.NAME) {
+        @Override
+        public String mapRow(Cursor cursor, int[] indexes) {
+            return cursor.getString(indexes[0]);
+        }
+    };
+
+    private static final IStatementBinder<String> NAME_BINDER = new IStatementBinder<String>() {
+        @Override
+        public void bind(SQLiteStatement statement, String item) {
+            statement.bindString(1, item);
+        }
+    };
+
     private EditText mEtValue;
 
     @Override
@@ -47,35 +68,51 @@ public class DBActivity extends BaseActivity {
     }
 
     private void get() {
-        Cursor cursor = SQLiteHelper.getInstances().query(DBTable.TABLE_NAME, null, null, null);
-        if (cursor == null || !cursor.moveToFirst()) {
-            ToastUtils.showShortMsg(this, "查询失败");
-            return;
-        }
-        int nameIndex = cursor.getColumnIndex(DBTable.NAME);
-        String value = cursor.getString(nameIndex);
-        mEtValue.setText(value + SystemClock.elapsedRealtime());
+        AsyncSQLiteHelper.getInstances().query(new IReadTask<String>() {
+            @Override
+            public String onRead(SQLiteHelper sqLiteHelper) {
+                return sqLiteHelper.queryFirst(DBTable.TABLE_NAME, NAME_MAPPER, null, null, null);
+            }
+        }, new IDBCallBack<String>() {
+            @Override
+            public void onSuccess(String value) {
+                if (value == null) {
+                    ToastUtils.showShortMsg(DBActivity.this, "查询失败");
+                    return;
+                }
+                mEtValue.setText(value + SystemClock.elapsedRealtime());
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                ToastUtils.showShortMsg(DBActivity.this, "查询失败");
+            }
+        });
     }
 
     private void save() {
-        String value = mEtValue.getText().toString().trim();
+        final String value = mEtValue.getText().toString().trim();
         if (TextUtils.isEmpty(value)) {
             return;
         }
-        SQLiteHelper.getInstances().delete(DBTable.TABLE_NAME, null, null);
+        //删除和插入在写线程的同一个事务中执行
+        AsyncSQLiteHelper.getInstances().write(new String[]{DBTable.TABLE_NAME}, new IWriteTask<Integer>() {
+            @Override
+            public Integer onWrite(SQLiteHelper sqLiteHelper) {
+                sqLiteHelper.delete(DBTable.TABLE_NAME, null, null);
+                return sqLiteHelper.insertAll(DBTable.TABLE_NAME, new String[]{DBTable.NAME},
+                        Collections.singletonList(value), NAME_BINDER);
+            }
+        }, new IDBCallBack<Integer>() {
+            @Override
+            public void onSuccess(Integer count) {
+                ToastUtils.showShortMsg(DBActivity.this, count == 0 ? "保存失败" : "保存成功");
+            }
 
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(DBTable.NAME, value);
-        SQLiteDatabase sqLiteDatabase = SQLiteHelper.getInstances().getSQLiteDatabase();
-        sqLiteDatabase.beginTransaction();
-        long rowID = sqLiteDatabase.insert(DBTable.TABLE_NAME, DBTable.ID, contentValues);
-        if (rowID == -1) {
-            sqLiteDatabase.endTransaction();
-            ToastUtils.showShortMsg(this, "保存失败");
-            return;
-        }
-        sqLiteDatabase.setTransactionSuccessful();
-        sqLiteDatabase.endTransaction();
-        ToastUtils.showShortMsg(this, "保存成功");
+            @Override
+            public void onFailure(Exception e) {
+                ToastUtils.showShortMsg(DBActivity.this, "保存失败");
+            }
+        });
     }
 }
@@ -5,12 +5,13 @@ import android.content.Context;
 
 import com.library.base.dialog.LoadingDialog;
 import com.library.network.interfaces.IHttpCallBack;
+import com.library.network.interfaces.IHttpCodeCallBack;
 import com.library.network.interfaces.IHttpParams;
 
 /**
  * Created by linqs on 2016/8/10.
  */
-public abstract class HttpCallBack implements IHttpCallBack {
+public abstract class HttpCallBack implements IHttpCallBack, IHttpCodeCallBack {
 
     private LoadingDialog mLoadingDialog;
 
@@ -45,6 +46,12 @@ public abstract class HttpCallBack implements IHttpCallBack {
         onFail(params, message);
     }
 
+    @Override
+    public final void onFail(IHttpParams httpParams, int code, String message) {
+        HttpParams params = (HttpParams) httpParams;
+        onFail(params, code, message);
+    }
+
     @Override
     public final void onSuccess(IHttpParams httpParams, String body) {
         HttpParams params = (HttpParams) httpParams;
@@ -79,6 +86,10 @@ public abstract class HttpCallBack implements IHttpCallBack {
 
     }
 
+    public void onFail(HttpParams httpParams, int code, String message) {
+        onFail(httpParams, message);
+    }
+
     public void onFail(HttpParams httpParams, String message) {
 
     }
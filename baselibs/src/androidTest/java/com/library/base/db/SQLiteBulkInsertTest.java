@@ -0,0 +1,147 @@
+package com.library.base.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * insertAll/upsertAll, 以及和逐行insert(ContentValues)的对比
+ * 需要真实的SQLite, 在设备或模拟器上运行
+ * Created by admin on 2017/1/12.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteBulkInsertTest {
+
+    private static final String TAG = "SQLiteBulkInsertTest";
+
+    private static final String DB_NAME = "bulk_insert_test.db";
+
+    private static final String TABLE = "catalog";
+
+    private static final String[] COLUMNS = {"id", "name", "price"};
+
+    //逐行插入很慢, 只取一部分计算每行耗时
+    private static final int ROW_BY_ROW_ROWS = 2000;
+
+    //实际同步的目录大小
+    private static final int BULK_ROWS = 50000;
+
+    private static final IStatementBinder<Item> BINDER = new IStatementBinder<Item>() {
+        @Override
+        public void bind(SQLiteStatement statement, Item item) {
+            statement.bindLong(1, item.id);
+            statement.bindString(2, item.name);
+            statement.bindDouble(3, item.price);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        SQLiteHelper.getInstances().init(context, DB_NAME, 1, new ISQLiteCallBackListener() {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                db.execSQL("create table " + TABLE + "(id integer primary key, name text not null, price real)");
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteHelper.getInstances().close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insertAllInsertsEveryRow() {
+        List<Item> items = items(0, 1234, "a");
+        assertEquals(items.size(), SQLiteHelper.getInstances().insertAll(TABLE, COLUMNS, items, BINDER, 100));
+        assertEquals(items.size(), count());
+    }
+
+    @Test
+    public void upsertAllReplacesExistingRows() {
+        SQLiteHelper.getInstances().insertAll(TABLE, COLUMNS, items(0, 100, "old"), BINDER);
+        assertEquals(150, SQLiteHelper.getInstances().upsertAll(TABLE, COLUMNS, items(50, 150, "new"), BINDER));
+        assertEquals(200, count());
+        assertEquals(150, DatabaseUtils.longForQuery(SQLiteHelper.getInstances().getSQLiteDatabase(),
+                "select count(*) from " + TABLE + " where name like 'new%'", null));
+    }
+
+    @Test
+    public void benchmarkAgainstRowByRowInsert() {
+        SQLiteDatabase sqLiteDatabase = SQLiteHelper.getInstances().getSQLiteDatabase();
+        List<Item> rowByRow = items(0, ROW_BY_ROW_ROWS, "row");
+        long start = SystemClock.elapsedRealtime();
+        //原来DBActivity.save的方式: 每行一个ContentValues, 每行一个隐式事务
+        for (Item item : rowByRow) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put("id", item.id);
+            contentValues.put("name", item.name);
+            contentValues.put("price", item.price);
+            sqLiteDatabase.insert(TABLE, null, contentValues);
+        }
+        long rowByRowMillis = SystemClock.elapsedRealtime() - start;
+
+        List<Item> bulk = items(ROW_BY_ROW_ROWS, BULK_ROWS, "bulk");
+        start = SystemClock.elapsedRealtime();
+        int inserted = SQLiteHelper.getInstances().insertAll(TABLE, COLUMNS, bulk, BINDER);
+        long bulkMillis = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(BULK_ROWS, inserted);
+        assertEquals(ROW_BY_ROW_ROWS + BULK_ROWS, count());
+        Log.i(TAG, "row by row: " + ROW_BY_ROW_ROWS + " rows in " + rowByRowMillis + " ms ("
+                + perThousand(rowByRowMillis, ROW_BY_ROW_ROWS) + " ms/1k rows), insertAll: " + BULK_ROWS + " rows in "
+                + bulkMillis + " ms (" + perThousand(bulkMillis, BULK_ROWS) + " ms/1k rows)");
+    }
+
+    private static long perThousand(long millis, int rows) {
+        return millis * 1000 / rows;
+    }
+
+    private static long count() {
+        return DatabaseUtils.queryNumEntries(SQLiteHelper.getInstances().getSQLiteDatabase(), TABLE);
+    }
+
+    private static List<Item> items(int from, int count, String prefix) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            items.add(new Item(i, prefix + i, i * 0.5));
+        }
+        return items;
+    }
+
+    private static class Item {
+        final long id;
+        final String name;
+        final double price;
+
+        Item(long id, String name, double price) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.library.base.db;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WAL下读不被写事务阻塞, 以及开启前后读写混合的吞吐量
+ * 需要真实的SQLite, 在设备或模拟器上运行
+ * Created by admin on 2017/1/12.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteWalTest {
+
+    private static final String TAG = "SQLiteWalTest";
+
+    private static final String DB_NAME = "wal_test.db";
+
+    private static final String TABLE = "item";
+
+    private static final int SEED_ROWS = 1000;
+
+    //每种配置的测试时间(毫秒)
+    private static final long DURATION = 3000;
+
+    private final ExecutorService mExecutorService = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        mExecutorService.shutdownNow();
+        SQLiteHelper.getInstances().close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void readIsNotBlockedByWriteTransaction() throws Exception {
+        open(walConfig());
+        assertTrue(SQLiteHelper.getInstances().isWriteAheadLogging());
+        final CountDownLatch inTransaction = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SQLiteDatabase sqLiteDatabase = SQLiteHelper.getInstances().getSQLiteDatabase();
+                sqLiteDatabase.beginTransaction();
+                try {
+                    sqLiteDatabase.execSQL("insert into " + TABLE + "(name) values('writing')");
+                    inTransaction.countDown();
+                    release.await();
+                    sqLiteDatabase.setTransactionSuccessful();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    sqLiteDatabase.endTransaction();
+                }
+            }
+        });
+        writer.start();
+        try {
+            assertTrue(inTransaction.await(5, TimeUnit.SECONDS));
+            //写事务未提交时, 读连接看到的是提交前的数据
+            Future<Long> count = mExecutorService.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return DatabaseUtils.queryNumEntries(SQLiteHelper.getInstances().getReadableDatabase(), TABLE);
+                }
+            });
+            assertEquals(Long.valueOf(SEED_ROWS), count.get(1, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+    }
+
+    @Test
+    public void benchmarkMixedReadWrite() throws Exception {
+        Result before = runMixed(null);
+        SQLiteHelper.getInstances().close();
+        InstrumentationRegistry.getTargetContext().deleteDatabase(DB_NAME);
+        Result after = runMixed(walConfig());
+        Log.i(TAG, "default: " + before + "; WAL + synchronous NORMAL: " + after);
+    }
+
+    /***
+     * 后台线程持续小事务写入, 当前线程(相当于主线程)做单行查询
+     */
+    private Result runMixed(SQLiteConfig sqLiteConfig) throws Exception {
+        open(sqLiteConfig);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong writes = new AtomicLong();
+        Future<?> writer = mExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                SQLiteDatabase sqLiteDatabase = SQLiteHelper.getInstances().getSQLiteDatabase();
+                SQLiteStatement statement = sqLiteDatabase.compileStatement("insert into " + TABLE + "(name) values(?)");
+                try {
+                    while (!stop.get()) {
+                        sqLiteDatabase.beginTransaction();
+                        try {
+                            for (int i = 0; i < 10; i++) {
+                                statement.bindString(1, "w" + i);
+                                statement.executeInsert();
+                            }
+                            sqLiteDatabase.setTransactionSuccessful();
+                        } finally {
+                            sqLiteDatabase.endTransaction();
+                        }
+                        writes.addAndGet(10);
+                    }
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+        Result result = new Result();
+        SQLiteDatabase readable = SQLiteHelper.getInstances().getReadableDatabase();
+        long end = SystemClock.elapsedRealtime() + DURATION;
+        long id = 1;
+        while (SystemClock.elapsedRealtime() < end) {
+            long start = SystemClock.elapsedRealtime();
+            DatabaseUtils.stringForQuery(readable, "select name from " + TABLE + " where id=?", new String[]{String.valueOf(id)});
+            result.maxReadMillis = Math.max(result.maxReadMillis, SystemClock.elapsedRealtime() - start);
+            result.reads++;
+            id = id % SEED_ROWS + 1;
+        }
+        stop.set(true);
+        writer.get(10, TimeUnit.SECONDS);
+        result.writes = writes.get();
+        assertTrue(result.reads > 0 && result.writes > 0);
+        return result;
+    }
+
+    private static SQLiteConfig walConfig() {
+        SQLiteConfig sqLiteConfig = new SQLiteConfig();
+        sqLiteConfig.setWriteAheadLogging(true);
+        sqLiteConfig.setSynchronous(SQLiteConfig.SYNCHRONOUS_NORMAL);
+        sqLiteConfig.setCacheSize(-2048);
+        return sqLiteConfig;
+    }
+
+    private static void open(SQLiteConfig sqLiteConfig) {
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        SQLiteHelper.getInstances().init(context, DB_NAME, 1, sqLiteConfig, new ISQLiteCallBackListener() {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                db.execSQL("create table " + TABLE + "(id integer primary key autoincrement, name text)");
+                for (int i = 0; i < SEED_ROWS; i++) {
+                    db.execSQL("insert into " + TABLE + "(name) values('seed" + i + "')");
+                }
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+
+            }
+        });
+        SQLiteHelper.getInstances().getSQLiteDatabase();
+    }
+
+    private static class Result {
+        long reads;
+        long writes;
+        long maxReadMillis;
+
+        @Override
+        public String toString() {
+            return "reads/s " + reads * 1000 / DURATION + ", writes/s " + writes * 1000 / DURATION + ", max read " + maxReadMillis + " ms";
+        }
+    }
+}
@@ -2,14 +2,48 @@ package com.library.base;
 
 import android.app.Application;
 
+import com.library.base.thread.MainThreadScheduler;
+
 /**
  * Created by linqs on 2016/7/24.
  */
 public class BaseApplication extends Application {
 
+    //后台延迟初始化的等待时间(毫秒), 避开启动阶段
+    private static final long BACKGROUND_INIT_DELAY = 3000;
+
+    //主线程一直不空闲时, 空闲初始化最多等待的时间(毫秒)
+    private static final long IDLE_INIT_MAX_DELAY = 5000;
+
     @Override
     public void onCreate() {
         super.onCreate();
+        MainThreadScheduler.getInstances().runWhenIdle(new Runnable() {
+            @Override
+            public void run() {
+                onIdleInit();
+            }
+        }, IDLE_INIT_MAX_DELAY);
+        MainThreadScheduler.getInstances().runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                onBackgroundInit();
+            }
+        }, BACKGROUND_INIT_DELAY);
+    }
+
+    /***
+     * 启动后主线程第一次空闲时执行, 用于不影响首屏的初始化
+     */
+    protected void onIdleInit() {
+
+    }
+
+    /***
+     * 启动后延迟在后台线程执行, 用于缓存预热、日志上传等
+     */
+    protected void onBackgroundInit() {
+
     }
 
 }
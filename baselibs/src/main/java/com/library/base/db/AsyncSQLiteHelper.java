@@ -0,0 +1,430 @@
+package com.library.base.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步数据库操作, 使用前SQLiteHelper需要先init
+ * 1.写: 单独的写线程, 排队的写任务合并到同一个事务中提交
+ * 2.读: 读线程池, 开启WAL时多个线程并发读, 否则只有一个线程
+ * 3.观察: 写事务提交后, 订阅了被修改的表的查询重新执行
+ * 结果都在主线程回调
+ * Created by admin on 2017/1/9.
+ */
+
+public class AsyncSQLiteHelper {
+
+    //一个事务最多合并的写任务数
+    private static final int MAX_BATCH = 64;
+
+    //开启WAL时的读线程数
+    private static final int READ_THREADS = 3;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final LinkedBlockingQueue<WriteRequest<?>> mWriteQueue = new LinkedBlockingQueue<>();
+    private Thread mWriteThread;
+
+    private ThreadPoolExecutor mReadExecutor;
+
+    private final List<DBSubscription<?>> mSubscriptions = new CopyOnWriteArrayList<>();
+
+    private AsyncSQLiteHelper() {
+
+    }
+
+    private static class AsyncSQLiteHelperManager {
+        private static AsyncSQLiteHelper sAsyncSQLiteHelper = new AsyncSQLiteHelper();
+    }
+
+    public static AsyncSQLiteHelper getInstances() {
+        return AsyncSQLiteHelperManager.sAsyncSQLiteHelper;
+    }
+
+    /***
+     * 异步写
+     *
+     * @param tables   写任务修改的表, 提交后通知订阅这些表的查询
+     * @param task
+     * @param callBack 可以为null
+     */
+    public <T> void write(String[] tables, IWriteTask<T> task, IDBCallBack<T> callBack) {
+        if (null == task) {
+            throw new NullPointerException("task is null");
+        }
+        ensureWriteThread();
+        mWriteQueue.offer(new WriteRequest<>(tables, task, callBack));
+    }
+
+    /***
+     * 在写线程中提前打开数据库, 需要升级时执行迁移, 避免第一次使用时在主线程升级
+     * 之后的写任务排在它后面, 读任务打开数据库时会等待它完成
+     *
+     * @param callBack 回调数据库版本, 可以为null
+     */
+    public void prewarm(IDBCallBack<Integer> callBack) {
+        write(null, new IWriteTask<Integer>() {
+            @Override
+            public Integer onWrite(SQLiteHelper sqLiteHelper) {
+                return sqLiteHelper.getSQLiteDatabase().getVersion();
+            }
+        }, callBack);
+    }
+
+    /***
+     * 异步读
+     *
+     * @param task
+     * @param callBack
+     * @return 可以用来取消, 取消后不再回调
+     */
+    public <T> Future<T> query(IReadTask<T> task, IDBCallBack<T> callBack) {
+        if (null == task) {
+            throw new NullPointerException("task is null");
+        }
+        ReadRequest<T> readRequest = new ReadRequest<>(task, callBack);
+        executeRead(readRequest);
+        return readRequest;
+    }
+
+    /***
+     * 可观察的查询, 立即查询一次, 之后tables中的表被修改时重新查询
+     * 不再需要时调用unsubscribe, 如Activity的onDestroy
+     *
+     * @param tables   查询读取的表
+     * @param task
+     * @param callBack
+     * @return
+     */
+    public <T> DBSubscription<T> observe(String[] tables, IReadTask<T> task, IDBCallBack<T> callBack) {
+        if (null == tables || tables.length == 0 || null == task || null == callBack) {
+            throw new IllegalArgumentException("tables, task and callBack is not null");
+        }
+        DBSubscription<T> subscription = new DBSubscription<>(this, tables, task, callBack);
+        mSubscriptions.add(subscription);
+        subscription.requery();
+        return subscription;
+    }
+
+    /***
+     * 不通过write修改数据库时, 手动通知表已修改
+     *
+     * @param tables
+     */
+    public void notifyTableChanged(String... tables) {
+        if (null == tables || tables.length == 0) {
+            return;
+        }
+        Set<String> changedTables = new HashSet<>();
+        addTables(changedTables, tables);
+        dispatchTableChanged(changedTables);
+    }
+
+    SQLiteHelper getSQLiteHelper() {
+        return SQLiteHelper.getInstances();
+    }
+
+    void removeSubscription(DBSubscription<?> subscription) {
+        mSubscriptions.remove(subscription);
+    }
+
+    void postToMain(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    void executeRead(Runnable runnable) {
+        synchronized (this) {
+            if (null == mReadExecutor) {
+                //没有WAL时只有一个连接, 多个读线程也只能排队
+                int threads = getSQLiteHelper().isWriteAheadLogging() ? READ_THREADS : 1;
+                mReadExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new DBThreadFactory("sqlite-read-"));
+                mReadExecutor.allowCoreThreadTimeOut(true);
+            }
+        }
+        mReadExecutor.execute(runnable);
+    }
+
+    private synchronized void ensureWriteThread() {
+        if (null != mWriteThread) {
+            return;
+        }
+        mWriteThread = new DBThreadFactory("sqlite-write-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runWriteLoop();
+                } finally {
+                    onWriteThreadExit();
+                }
+            }
+        });
+        mWriteThread.start();
+    }
+
+    private void runWriteLoop() {
+        List<WriteRequest<?>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(mWriteQueue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            mWriteQueue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                executeBatch(batch);
+            } catch (Throwable e) {
+                //任务外的错误(如通知订阅时出错), 没有回调的任务按失败处理, 写线程继续运行
+                for (WriteRequest<?> request : batch) {
+                    if (!request.mDelivered) {
+                        request.deliverFailure(toException(e));
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /***
+     * 写线程退出后下次write重新创建, 退出前已入队的任务也由新线程执行
+     */
+    private void onWriteThreadExit() {
+        synchronized (this) {
+            if (mWriteThread == Thread.currentThread()) {
+                mWriteThread = null;
+            }
+        }
+        if (!mWriteQueue.isEmpty()) {
+            ensureWriteThread();
+        }
+    }
+
+    private void executeBatch(List<WriteRequest<?>> batch) {
+        if (batch.size() > 1) {
+            boolean committed = false;
+            try {
+                committed = executeInTransaction(batch);
+            } catch (Throwable e) {
+                //合并的事务已回滚
+            }
+            if (committed) {
+                onCommitted(batch);
+                return;
+            }
+            //逐个重新执行, 只有出错的任务失败
+        }
+        for (WriteRequest<?> request : batch) {
+            List<WriteRequest<?>> single = Collections.<WriteRequest<?>>singletonList(request);
+            boolean committed;
+            try {
+                committed = executeInTransaction(single);
+            } catch (Throwable e) {
+                //Error(如OutOfMemoryError)也只让当前任务失败, 不能让写线程退出
+                request.deliverFailure(toException(e));
+                continue;
+            }
+            if (committed) {
+                onCommitted(single);
+            } else {
+                request.deliverFailure(new SQLiteException("transaction is rolled back"));
+            }
+        }
+    }
+
+    /***
+     * 在一个事务中执行
+     * 任务内部的嵌套事务失败(如捕获了update的异常)时, endTransaction不会抛异常, 而是回滚整个事务
+     *
+     * @return 是否提交成功
+     */
+    private boolean executeInTransaction(List<WriteRequest<?>> batch) {
+        SQLiteHelper sqLiteHelper = getSQLiteHelper();
+        SQLiteDatabase sqLiteDatabase = sqLiteHelper.getSQLiteDatabase();
+        final boolean[] committed = new boolean[1];
+        sqLiteDatabase.beginTransactionWithListener(new SQLiteTransactionListener() {
+            @Override
+            public void onBegin() {
+
+            }
+
+            @Override
+            public void onCommit() {
+                committed[0] = true;
+            }
+
+            @Override
+            public void onRollback() {
+                committed[0] = false;
+            }
+        });
+        try {
+            for (WriteRequest<?> request : batch) {
+                request.execute(sqLiteHelper);
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+        return committed[0];
+    }
+
+    private void onCommitted(List<WriteRequest<?>> batch) {
+        Set<String> changedTables = new HashSet<>();
+        for (WriteRequest<?> request : batch) {
+            addTables(changedTables, request.mTables);
+            request.deliverSuccess();
+        }
+        dispatchTableChanged(changedTables);
+    }
+
+    private void dispatchTableChanged(Set<String> changedTables) {
+        if (changedTables.isEmpty()) {
+            return;
+        }
+        for (DBSubscription<?> subscription : mSubscriptions) {
+            if (subscription.observes(changedTables)) {
+                subscription.requery();
+            }
+        }
+    }
+
+    private static Exception toException(Throwable e) {
+        return e instanceof Exception ? (Exception) e : new ExecutionException(e);
+    }
+
+    private static void addTables(Set<String> set, String[] tables) {
+        if (null == tables) {
+            return;
+        }
+        for (String table : tables) {
+            set.add(table.toLowerCase(Locale.US));
+        }
+    }
+
+    private class WriteRequest<T> {
+        private String[] mTables;
+        private IWriteTask<T> mTask;
+        private IDBCallBack<T> mCallBack;
+        private T mResult;
+        //只在写线程访问
+        private boolean mDelivered;
+
+        WriteRequest(String[] tables, IWriteTask<T> task, IDBCallBack<T> callBack) {
+            mTables = tables;
+            mTask = task;
+            mCallBack = callBack;
+        }
+
+        void execute(SQLiteHelper sqLiteHelper) {
+            mResult = mTask.onWrite(sqLiteHelper);
+        }
+
+        void deliverSuccess() {
+            mDelivered = true;
+            if (null == mCallBack) {
+                return;
+            }
+            final T result = mResult;
+            postToMain(new Runnable() {
+                @Override
+                public void run() {
+                    mCallBack.onSuccess(result);
+                }
+            });
+        }
+
+        void deliverFailure(final Exception e) {
+            mDelivered = true;
+            if (null == mCallBack) {
+                return;
+            }
+            postToMain(new Runnable() {
+                @Override
+                public void run() {
+                    mCallBack.onFailure(e);
+                }
+            });
+        }
+    }
+
+    private class ReadRequest<T> extends FutureTask<T> {
+        private IDBCallBack<T> mCallBack;
+
+        ReadRequest(final IReadTask<T> task, IDBCallBack<T> callBack) {
+            super(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return task.onRead(getSQLiteHelper());
+                }
+            });
+            mCallBack = callBack;
+        }
+
+        @Override
+        protected void done() {
+            if (null == mCallBack || isCancelled()) {
+                return;
+            }
+            postToMain(new Runnable() {
+                @Override
+                public void run() {
+                    //回调前又被取消
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        mCallBack.onSuccess(get());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        mCallBack.onFailure(cause instanceof Exception ? (Exception) cause : e);
+                    } catch (InterruptedException e) {
+                        mCallBack.onFailure(e);
+                    }
+                }
+            });
+        }
+    }
+
+    private static class DBThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+        private String mPrefix;
+
+        DBThreadFactory(String prefix) {
+            mPrefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    r.run();
+                }
+            }, mPrefix + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.library.base.db;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 /**
  * Created by admin on 2016/11/8.
@@ -11,10 +12,45 @@ import android.database.sqlite.SQLiteOpenHelper;
 class BaseSQLiteOpenHelper extends SQLiteOpenHelper {
 
     private ISQLiteCallBackListener mISQLiteCallBackListener;
+    private SQLiteConfig mSQLiteConfig;
 
     public BaseSQLiteOpenHelper(Context context, String name, int version, ISQLiteCallBackListener isqLiteCallBackListener) {
+        this(context, name, version, null, isqLiteCallBackListener);
+    }
+
+    public BaseSQLiteOpenHelper(Context context, String name, int version, SQLiteConfig sqLiteConfig, ISQLiteCallBackListener isqLiteCallBackListener) {
         super(context, name, null, version);
         mISQLiteCallBackListener = isqLiteCallBackListener;
+        mSQLiteConfig = null == sqLiteConfig ? new SQLiteConfig() : sqLiteConfig;
+        if (mSQLiteConfig.isWriteAheadLogging() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            //打开数据库之前设置, 避免打开后再切换日志模式
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (mSQLiteConfig.isWriteAheadLogging()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+                && !db.isReadOnly()) {
+            db.enableWriteAheadLogging();
+        }
+        if (mSQLiteConfig.getMaxSqlCacheSize() != SQLiteConfig.UNSET) {
+            db.setMaxSqlCacheSize(mSQLiteConfig.getMaxSqlCacheSize());
+        }
+        //PRAGMA只作用于当前连接
+        if (mSQLiteConfig.getCacheSize() != SQLiteConfig.UNSET) {
+            db.execSQL("PRAGMA cache_size=" + mSQLiteConfig.getCacheSize());
+        }
+        if (mSQLiteConfig.getSynchronous() != SQLiteConfig.UNSET && !db.isReadOnly()) {
+            db.execSQL("PRAGMA synchronous=" + mSQLiteConfig.getSynchronous());
+        }
+    }
+
+    public boolean isWriteAheadLogging() {
+        return mSQLiteConfig.isWriteAheadLogging() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
     }
 
     @Override
@@ -0,0 +1,132 @@
+package com.library.base.db;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 可观察的查询, 订阅的表被修改后重新查询
+ * 查询中又收到修改时只在结束后再查询一次, 结果和上次相同(equals)时不回调
+ * Created by admin on 2017/1/9.
+ */
+
+public class DBSubscription<T> {
+
+    private AsyncSQLiteHelper mAsyncSQLiteHelper;
+    private String[] mTables;
+    private IReadTask<T> mReadTask;
+    private IDBCallBack<T> mCallBack;
+
+    //以下状态由this保护
+    private boolean mRunning;
+    private boolean mDirty;
+    private boolean mUnsubscribed;
+
+    //只在主线程访问
+    private boolean mHasResult;
+    private T mLastResult;
+
+    DBSubscription(AsyncSQLiteHelper asyncSQLiteHelper, String[] tables, IReadTask<T> readTask, IDBCallBack<T> callBack) {
+        mAsyncSQLiteHelper = asyncSQLiteHelper;
+        mTables = new String[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            mTables[i] = tables[i].toLowerCase(Locale.US);
+        }
+        mReadTask = readTask;
+        mCallBack = callBack;
+    }
+
+    /***
+     * 取消订阅, 之后不会再回调
+     */
+    public void unsubscribe() {
+        synchronized (this) {
+            mUnsubscribed = true;
+        }
+        mAsyncSQLiteHelper.removeSubscription(this);
+    }
+
+    public synchronized boolean isUnsubscribed() {
+        return mUnsubscribed;
+    }
+
+    boolean observes(Set<String> changedTables) {
+        for (String table : mTables) {
+            if (changedTables.contains(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void requery() {
+        synchronized (this) {
+            if (mUnsubscribed) {
+                return;
+            }
+            if (mRunning) {
+                //正在查询, 结束后再查一次
+                mDirty = true;
+                return;
+            }
+            mRunning = true;
+        }
+        mAsyncSQLiteHelper.executeRead(new Runnable() {
+            @Override
+            public void run() {
+                runQuery();
+            }
+        });
+    }
+
+    private void runQuery() {
+        while (true) {
+            T result = null;
+            RuntimeException error = null;
+            try {
+                result = mReadTask.onRead(mAsyncSQLiteHelper.getSQLiteHelper());
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            synchronized (this) {
+                if (mUnsubscribed) {
+                    mRunning = false;
+                    return;
+                }
+                if (mDirty) {
+                    //查询期间表又被修改, 本次结果已过期
+                    mDirty = false;
+                    continue;
+                }
+                mRunning = false;
+                //在锁内post, 保证下一次查询的结果一定排在本次之后回调
+                deliver(result, error);
+            }
+            return;
+        }
+    }
+
+    private void deliver(final T result, final RuntimeException error) {
+        mAsyncSQLiteHelper.postToMain(new Runnable() {
+            @Override
+            public void run() {
+                if (isUnsubscribed()) {
+                    return;
+                }
+                if (null != error) {
+                    mCallBack.onFailure(error);
+                    return;
+                }
+                if (mHasResult && equal(mLastResult, result)) {
+                    return;
+                }
+                mHasResult = true;
+                mLastResult = result;
+                mCallBack.onSuccess(result);
+            }
+        });
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+}
@@ -0,0 +1,12 @@
+package com.library.base.db;
+
+/**
+ * 异步数据库操作结果, 在主线程回调
+ * Created by admin on 2017/1/9.
+ */
+
+public interface IDBCallBack<T> {
+    void onSuccess(T result);
+
+    void onFailure(Exception e);
+}
@@ -0,0 +1,10 @@
+package com.library.base.db;
+
+/**
+ * 读任务, 在读线程池中执行
+ * Created by admin on 2017/1/9.
+ */
+
+public interface IReadTask<T> {
+    T onRead(SQLiteHelper sqLiteHelper);
+}
@@ -0,0 +1,15 @@
+package com.library.base.db;
+
+/**
+ * 逐行回调查询结果, 不需要先把所有行放到List中
+ * Created by admin on 2017/1/6.
+ */
+
+public interface IRowCallBack<T> {
+
+    /***
+     * @param item
+     * @return false停止遍历, 剩余的行不再读取
+     */
+    boolean onRow(T item);
+}
@@ -0,0 +1,20 @@
+package com.library.base.db;
+
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 批量插入时把一行数据绑定到SQLiteStatement
+ * Created by admin on 2017/1/4.
+ */
+
+public interface IStatementBinder<T> {
+
+    /***
+     * 绑定一行, 下标从1开始, 顺序和columns一致
+     * 已经清除了上一行的绑定, 为null的列可以不绑定
+     *
+     * @param statement
+     * @param item
+     */
+    void bind(SQLiteStatement statement, T item);
+}
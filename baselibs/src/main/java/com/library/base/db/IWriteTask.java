@@ -0,0 +1,11 @@
+package com.library.base.db;
+
+/**
+ * 写任务, 在写线程中执行, 可能和其他写任务合并在同一个事务中
+ * 合并的事务失败时会回滚后逐个重新执行, 所以只应该修改数据库, 不要有其他副作用
+ * Created by admin on 2017/1/9.
+ */
+
+public interface IWriteTask<T> {
+    T onWrite(SQLiteHelper sqLiteHelper);
+}
@@ -0,0 +1,38 @@
+package com.library.base.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * 数据库版本迁移的一步, 从startVersion升级到endVersion
+ * Created by admin on 2017/1/10.
+ */
+
+public abstract class Migration {
+
+    private int mStartVersion;
+    private int mEndVersion;
+
+    public Migration(int startVersion, int endVersion) {
+        if (startVersion < 1 || endVersion <= startVersion) {
+            throw new IllegalArgumentException("endVersion must be greater than startVersion");
+        }
+        mStartVersion = startVersion;
+        mEndVersion = endVersion;
+    }
+
+    public int getStartVersion() {
+        return mStartVersion;
+    }
+
+    public int getEndVersion() {
+        return mEndVersion;
+    }
+
+    /***
+     * 执行迁移, 已经在事务中, 不要再开启或提交事务
+     * 大表可以使用TableMigrationUtils分批复制
+     *
+     * @param db
+     */
+    public abstract void migrate(SQLiteDatabase db);
+}
@@ -0,0 +1,64 @@
+package com.library.base.db;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按版本顺序执行Migration的ISQLiteCallBackListener, 子类只需要实现onCreate
+ * 每一步在单独的事务中执行, 但都嵌套在系统的升级事务中, 任意一步失败整个升级回滚, 版本号不变
+ * 升级在第一次打开数据库时执行, 可以用AsyncSQLiteHelper.prewarm提前在后台线程打开
+ * Created by admin on 2017/1/10.
+ */
+
+public abstract class MigrationCallBackListener implements ISQLiteCallBackListener {
+
+    private final List<Migration> mMigrations = new ArrayList<>();
+
+    public void addMigrations(Migration... migrations) {
+        for (Migration migration : migrations) {
+            for (Migration exist : mMigrations) {
+                if (exist.getStartVersion() == migration.getStartVersion()
+                        && exist.getEndVersion() == migration.getEndVersion()) {
+                    throw new IllegalArgumentException("duplicate migration " + migration.getStartVersion() + "->" + migration.getEndVersion());
+                }
+            }
+            mMigrations.add(migration);
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        int version = oldVersion;
+        while (version < newVersion) {
+            Migration migration = findMigration(version, newVersion);
+            if (null == migration) {
+                throw new IllegalStateException("no migration from version " + version + " to " + newVersion);
+            }
+            db.beginTransaction();
+            try {
+                migration.migrate(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            version = migration.getEndVersion();
+        }
+    }
+
+    /***
+     * 从version开始, 不超过newVersion的跨度最大的一步
+     */
+    private Migration findMigration(int version, int newVersion) {
+        Migration found = null;
+        for (Migration migration : mMigrations) {
+            if (migration.getStartVersion() == version
+                    && migration.getEndVersion() <= newVersion
+                    && (null == found || migration.getEndVersion() > found.getEndVersion())) {
+                found = migration;
+            }
+        }
+        return found;
+    }
+}
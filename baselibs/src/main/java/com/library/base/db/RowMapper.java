@@ -0,0 +1,46 @@
+package com.library.base.db;
+
+import android.database.Cursor;
+
+/**
+ * Cursor一行映射为对象
+ * 列下标每次查询只解析一次, 按columns的顺序传给mapRow, 不需要每行调用getColumnIndex
+ * 本身不保存查询状态, 可以多个线程共用一个实例
+ * Created by admin on 2017/1/6.
+ */
+
+public abstract class RowMapper<T> {
+
+    private String[] mColumns;
+
+    /***
+     * @param columns 需要读取的列, 同时作为查询的projection
+     */
+    public RowMapper(String... columns) {
+        if (null == columns || columns.length == 0) {
+            throw new IllegalArgumentException("columns is empty");
+        }
+        mColumns = columns;
+    }
+
+    public String[] getColumns() {
+        return mColumns;
+    }
+
+    /***
+     * 映射当前行
+     *
+     * @param cursor
+     * @param indexes 列下标, indexes[i]对应getColumns()[i]
+     * @return
+     */
+    public abstract T mapRow(Cursor cursor, int[] indexes);
+
+    int[] resolveIndexes(Cursor cursor) {
+        int[] indexes = new int[mColumns.length];
+        for (int i = 0; i < mColumns.length; i++) {
+            indexes[i] = cursor.getColumnIndexOrThrow(mColumns[i]);
+        }
+        return indexes;
+    }
+}
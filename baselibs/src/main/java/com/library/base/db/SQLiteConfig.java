@@ -0,0 +1,81 @@
+package com.library.base.db;
+
+/**
+ * 数据库连接配置, 默认全部不开启, 保持系统默认行为
+ * Created by admin on 2017/1/5.
+ */
+
+public class SQLiteConfig {
+
+    //不设置, 使用系统默认值
+    public static final int UNSET = Integer.MIN_VALUE;
+
+    //PRAGMA synchronous
+    public static final int SYNCHRONOUS_OFF = 0;
+    public static final int SYNCHRONOUS_NORMAL = 1;
+    public static final int SYNCHRONOUS_FULL = 2;
+
+    private boolean mWriteAheadLogging;
+    private int mCacheSize = UNSET;
+    private int mSynchronous = UNSET;
+    private int mMaxSqlCacheSize = UNSET;
+
+    public boolean isWriteAheadLogging() {
+        return mWriteAheadLogging;
+    }
+
+    /***
+     * 开启WAL(API 11+), 读和写可以并发, 读不会被后台写阻塞
+     *
+     * @param writeAheadLogging
+     */
+    public void setWriteAheadLogging(boolean writeAheadLogging) {
+        mWriteAheadLogging = writeAheadLogging;
+    }
+
+    public int getCacheSize() {
+        return mCacheSize;
+    }
+
+    /***
+     * PRAGMA cache_size, 正数为页数, 负数为KB
+     * 只作用于主连接, WAL下的只读连接使用默认值
+     *
+     * @param cacheSize
+     */
+    public void setCacheSize(int cacheSize) {
+        mCacheSize = cacheSize;
+    }
+
+    public int getSynchronous() {
+        return mSynchronous;
+    }
+
+    /***
+     * PRAGMA synchronous, WAL下使用SYNCHRONOUS_NORMAL即可保证数据库不损坏
+     *
+     * @param synchronous SYNCHRONOUS_OFF, SYNCHRONOUS_NORMAL, SYNCHRONOUS_FULL
+     */
+    public void setSynchronous(int synchronous) {
+        if (synchronous < SYNCHRONOUS_OFF || synchronous > SYNCHRONOUS_FULL) {
+            throw new IllegalArgumentException("synchronous is invalid");
+        }
+        mSynchronous = synchronous;
+    }
+
+    public int getMaxSqlCacheSize() {
+        return mMaxSqlCacheSize;
+    }
+
+    /***
+     * 每个连接缓存的编译好的SQL语句数, 系统最大100
+     *
+     * @param maxSqlCacheSize
+     */
+    public void setMaxSqlCacheSize(int maxSqlCacheSize) {
+        if (maxSqlCacheSize < 1 || maxSqlCacheSize > 100) {
+            throw new IllegalArgumentException("maxSqlCacheSize must be in 1..100");
+        }
+        mMaxSqlCacheSize = maxSqlCacheSize;
+    }
+}
@@ -4,6 +4,10 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 数据库操作类
@@ -12,6 +16,9 @@ import android.database.sqlite.SQLiteDatabase;
 
 public class SQLiteHelper {
 
+    //批量插入时每个事务的默认行数
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+
     private BaseSQLiteOpenHelper mBaseSQLiteOpenHelper;
     private Context mContext;
 
@@ -28,11 +35,24 @@ public class SQLiteHelper {
     }
 
     public void init(Context context, String name, int version, ISQLiteCallBackListener isqLiteCallBackListener) {
+        init(context, name, version, null, isqLiteCallBackListener);
+    }
+
+    /***
+     * 初始化
+     *
+     * @param context
+     * @param name
+     * @param version
+     * @param sqLiteConfig            WAL, 页缓存等配置, 为null时使用系统默认
+     * @param isqLiteCallBackListener
+     */
+    public void init(Context context, String name, int version, SQLiteConfig sqLiteConfig, ISQLiteCallBackListener isqLiteCallBackListener) {
         if (null == context) {
             throw new NullPointerException("context is null");
         }
         mContext = context.getApplicationContext();
-        mBaseSQLiteOpenHelper = new BaseSQLiteOpenHelper(context, name, version, isqLiteCallBackListener);
+        mBaseSQLiteOpenHelper = new BaseSQLiteOpenHelper(context, name, version, sqLiteConfig, isqLiteCallBackListener);
     }
 
     public SQLiteDatabase getSQLiteDatabase() {
@@ -42,6 +62,24 @@ public class SQLiteHelper {
         return mBaseSQLiteOpenHelper.getWritableDatabase();
     }
 
+    /***
+     * 查询使用的数据库
+     * 开启WAL后同一个SQLiteDatabase内部有只读连接池, 不在事务中的查询走只读连接, 不会被其他线程的写阻塞
+     * 磁盘满等无法写入时系统会退化为只读方式打开
+     *
+     * @return
+     */
+    public SQLiteDatabase getReadableDatabase() {
+        if (null == mBaseSQLiteOpenHelper) {
+            throw new NullPointerException("user before must execute init method");
+        }
+        return mBaseSQLiteOpenHelper.getReadableDatabase();
+    }
+
+    public boolean isWriteAheadLogging() {
+        return null != mBaseSQLiteOpenHelper && mBaseSQLiteOpenHelper.isWriteAheadLogging();
+    }
+
     public void close() {
         if (null != mBaseSQLiteOpenHelper) {
             try {
@@ -61,24 +99,242 @@ public class SQLiteHelper {
     }
 
     public Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String groupBy, String having, String orderBy, String limit) {
-        return getSQLiteDatabase().query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+        return getReadableDatabase().query(table, columns, selection, selectionArgs, groupBy, having, orderBy, limit);
+    }
+
+    /***
+     * 逐行映射查询结果, 不构建完整的List, cursor一定会关闭
+     *
+     * @param table
+     * @param rowMapper
+     * @param selection
+     * @param selectionArgs
+     * @param orderBy
+     * @param limit
+     * @param rowCallBack   返回false时停止
+     * @return 回调的行数
+     */
+    public <T> int queryEach(String table, RowMapper<T> rowMapper, String selection, String[] selectionArgs, String orderBy, String limit, IRowCallBack<T> rowCallBack) {
+        Cursor cursor = query(table, rowMapper.getColumns(), selection, selectionArgs, null, null, orderBy, limit);
+        if (null == cursor) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            int[] indexes = rowMapper.resolveIndexes(cursor);
+            while (cursor.moveToNext()) {
+                count++;
+                if (!rowCallBack.onRow(rowMapper.mapRow(cursor, indexes))) {
+                    break;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+
+    public <T> List<T> queryList(String table, RowMapper<T> rowMapper, String selection, String[] selectionArgs, String orderBy, String limit) {
+        final List<T> list = new ArrayList<>();
+        queryEach(table, rowMapper, selection, selectionArgs, orderBy, limit, new IRowCallBack<T>() {
+            @Override
+            public boolean onRow(T item) {
+                list.add(item);
+                return true;
+            }
+        });
+        return list;
+    }
+
+    /***
+     * 查询第一行
+     *
+     * @return 没有数据时返回null
+     */
+    public <T> T queryFirst(String table, RowMapper<T> rowMapper, String selection, String[] selectionArgs, String orderBy) {
+        List<T> list = queryList(table, rowMapper, selection, selectionArgs, orderBy, "1");
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /***
+     * 按key分页(keyset), 查询key大于afterKey的pageSize行, 按key升序
+     * key列需要有索引(一般为主键), 不使用offset, 翻到后面的页也不会变慢
+     *
+     * @param table
+     * @param rowMapper
+     * @param keyColumn     整数类型的key列, 如_id
+     * @param afterKey      上一页的getLastKey(), 第一页传null
+     * @param pageSize
+     * @param selection     其他条件, 可以为null
+     * @param selectionArgs
+     * @return
+     */
+    public <T> SQLitePage<T> queryPage(String table, RowMapper<T> rowMapper, String keyColumn, Long afterKey, int pageSize, String selection, String[] selectionArgs) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be greater than 0");
+        }
+        String[] mapperColumns = rowMapper.getColumns();
+        //key列放在最后, 按位置读取
+        String[] columns = new String[mapperColumns.length + 1];
+        System.arraycopy(mapperColumns, 0, columns, 0, mapperColumns.length);
+        int keyIndex = mapperColumns.length;
+        columns[keyIndex] = keyColumn;
+
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        if (null != selection && selection.length() > 0) {
+            where.append("(").append(selection).append(")");
+            if (null != selectionArgs) {
+                for (String arg : selectionArgs) {
+                    args.add(arg);
+                }
+            }
+        }
+        if (null != afterKey) {
+            if (where.length() > 0) {
+                where.append(" and ");
+            }
+            where.append(keyColumn).append(" > ?");
+            args.add(String.valueOf(afterKey));
+        }
+        //多查一行判断是否还有下一页
+        Cursor cursor = query(table, columns, where.length() == 0 ? null : where.toString(),
+                args.isEmpty() ? null : args.toArray(new String[args.size()]),
+                null, null, keyColumn + " asc", String.valueOf(pageSize + 1));
+        List<T> items = new ArrayList<>();
+        Long lastKey = null;
+        boolean hasMore = false;
+        if (null == cursor) {
+            return new SQLitePage<>(items, null, false);
+        }
+        try {
+            int[] indexes = rowMapper.resolveIndexes(cursor);
+            while (cursor.moveToNext()) {
+                if (items.size() == pageSize) {
+                    hasMore = true;
+                    break;
+                }
+                items.add(rowMapper.mapRow(cursor, indexes));
+                lastKey = cursor.getLong(keyIndex);
+            }
+        } finally {
+            cursor.close();
+        }
+        return new SQLitePage<>(items, lastKey, hasMore);
     }
 
     public long update(String table, ContentValues contentValues, String whereClause, String[] whereArgs) {
         SQLiteDatabase sqLiteDatabase = getSQLiteDatabase();
         sqLiteDatabase.beginTransaction();
-        long rows = sqLiteDatabase.update(table, contentValues, whereClause, whereArgs);
-        sqLiteDatabase.setTransactionSuccessful();
-        sqLiteDatabase.endTransaction();
-        return rows;
+        try {
+            long rows = sqLiteDatabase.update(table, contentValues, whereClause, whereArgs);
+            sqLiteDatabase.setTransactionSuccessful();
+            return rows;
+        } finally {
+            //可能嵌套在外层事务中, 异常时也要结束, 否则外层事务无法提交
+            sqLiteDatabase.endTransaction();
+        }
     }
 
     public long delete(String table, String whereClause, String[] whereArgs) {
         SQLiteDatabase sqLiteDatabase = getSQLiteDatabase();
         sqLiteDatabase.beginTransaction();
-        long rows = sqLiteDatabase.delete(table, whereClause, whereArgs);
-        sqLiteDatabase.setTransactionSuccessful();
-        sqLiteDatabase.endTransaction();
-        return rows;
+        try {
+            long rows = sqLiteDatabase.delete(table, whereClause, whereArgs);
+            sqLiteDatabase.setTransactionSuccessful();
+            return rows;
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
+    /***
+     * 批量插入, 见insertAll(String, String[], List, IStatementBinder, int)
+     */
+    public <T> int insertAll(String table, String[] columns, List<T> items, IStatementBinder<T> binder) {
+        return insertAll(table, columns, items, binder, DEFAULT_CHUNK_SIZE);
+    }
+
+    /***
+     * 批量插入, 所有行共用一个编译好的SQLiteStatement, 不需要为每行创建ContentValues
+     * 每chunkSize行提交一个事务, 后面的事务失败时前面已提交的行会保留
+     *
+     * @param table
+     * @param columns   列名, 和binder绑定的顺序一致
+     * @param items
+     * @param binder
+     * @param chunkSize 每个事务的行数
+     * @return 插入成功的行数
+     */
+    public <T> int insertAll(String table, String[] columns, List<T> items, IStatementBinder<T> binder, int chunkSize) {
+        return executeAll("insert", table, columns, items, binder, chunkSize);
+    }
+
+    /***
+     * 批量插入或替换, 见upsertAll(String, String[], List, IStatementBinder, int)
+     */
+    public <T> int upsertAll(String table, String[] columns, List<T> items, IStatementBinder<T> binder) {
+        return upsertAll(table, columns, items, binder, DEFAULT_CHUNK_SIZE);
+    }
+
+    /***
+     * 批量插入或替换(insert or replace), 主键或唯一索引冲突时先删除旧行再插入
+     * 未包含在columns中的列会变成默认值
+     *
+     * @param table
+     * @param columns   列名, 和binder绑定的顺序一致
+     * @param items
+     * @param binder
+     * @param chunkSize 每个事务的行数
+     * @return 插入或替换成功的行数
+     */
+    public <T> int upsertAll(String table, String[] columns, List<T> items, IStatementBinder<T> binder, int chunkSize) {
+        return executeAll("insert or replace", table, columns, items, binder, chunkSize);
+    }
+
+    private <T> int executeAll(String verb, String table, String[] columns, List<T> items, IStatementBinder<T> binder, int chunkSize) {
+        if (null == columns || columns.length == 0 || null == binder) {
+            throw new IllegalArgumentException("columns and binder is not null");
+        }
+        if (null == items || items.isEmpty()) {
+            return 0;
+        }
+        chunkSize = Math.max(1, chunkSize);
+        StringBuilder sql = new StringBuilder(verb).append(" into ").append(table).append("(");
+        StringBuilder values = new StringBuilder(") values(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(",");
+                values.append(",");
+            }
+            sql.append(columns[i]);
+            values.append("?");
+        }
+        sql.append(values).append(")");
+        SQLiteDatabase sqLiteDatabase = getSQLiteDatabase();
+        SQLiteStatement statement = sqLiteDatabase.compileStatement(sql.toString());
+        int count = 0;
+        try {
+            int size = items.size();
+            for (int start = 0; start < size; start += chunkSize) {
+                int end = Math.min(size, start + chunkSize);
+                sqLiteDatabase.beginTransaction();
+                try {
+                    for (int i = start; i < end; i++) {
+                        statement.clearBindings();
+                        binder.bind(statement, items.get(i));
+                        if (statement.executeInsert() != -1) {
+                            count++;
+                        }
+                    }
+                    sqLiteDatabase.setTransactionSuccessful();
+                } finally {
+                    sqLiteDatabase.endTransaction();
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return count;
     }
 }
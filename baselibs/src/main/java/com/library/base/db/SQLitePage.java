@@ -0,0 +1,39 @@
+package com.library.base.db;
+
+import java.util.List;
+
+/**
+ * 按主键分页(keyset)的一页数据
+ * 下一页传入getLastKey(), 不使用offset, 翻页越多也不会变慢
+ * Created by admin on 2017/1/6.
+ */
+
+public class SQLitePage<T> {
+
+    private List<T> mItems;
+    private Long mLastKey;
+    private boolean mHasMore;
+
+    SQLitePage(List<T> items, Long lastKey, boolean hasMore) {
+        mItems = items;
+        mLastKey = lastKey;
+        mHasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    /***
+     * 本页最后一行的key, 本页为空时为null
+     *
+     * @return
+     */
+    public Long getLastKey() {
+        return mLastKey;
+    }
+
+    public boolean hasMore() {
+        return mHasMore;
+    }
+}
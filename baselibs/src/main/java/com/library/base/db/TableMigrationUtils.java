@@ -0,0 +1,101 @@
+package com.library.base.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 迁移时重建和复制表
+ * 按rowid分批复制, 每批的语句只处理batchSize行, 不适用于WITHOUT ROWID的表
+ * Created by admin on 2017/1/10.
+ */
+
+public class TableMigrationUtils {
+
+    //默认每批复制的行数
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private TableMigrationUtils() {
+
+    }
+
+    /***
+     * 重建表, 用于修改列类型, 删除列, 修改约束等ALTER TABLE不支持的修改
+     * 按SQLite文档推荐的顺序: 1.创建table_new 2.分批复制columns 3.删除旧表 4.table_new重命名为table
+     * 不重命名旧表, 其他表的外键, 触发器和视图仍然指向table
+     * 旧表的索引和触发器会随旧表删除, 需要在之后重新创建
+     *
+     * @param db
+     * @param table
+     * @param createSql 新表的建表语句, 表名为table_new
+     * @param columns   新旧表都有的需要保留的列
+     * @param batchSize
+     * @return 复制的行数
+     */
+    public static int rebuildTable(SQLiteDatabase db, String table, String createSql, String[] columns, int batchSize) {
+        String newTable = table + "_new";
+        db.execSQL(createSql);
+        int count = copyTable(db, table, newTable, columns, batchSize);
+        db.execSQL("drop table " + table);
+        db.execSQL("alter table " + newTable + " rename to " + table);
+        return count;
+    }
+
+    public static int copyTable(SQLiteDatabase db, String fromTable, String toTable, String[] columns) {
+        return copyTable(db, fromTable, toTable, columns, DEFAULT_BATCH_SIZE);
+    }
+
+    /***
+     * 分批把fromTable的columns复制到toTable
+     *
+     * @param db
+     * @param fromTable
+     * @param toTable
+     * @param columns
+     * @param batchSize
+     * @return 复制的行数
+     */
+    public static int copyTable(SQLiteDatabase db, String fromTable, String toTable, String[] columns, int batchSize) {
+        if (null == columns || columns.length == 0) {
+            throw new IllegalArgumentException("columns is empty");
+        }
+        batchSize = Math.max(1, batchSize);
+        StringBuilder columnList = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                columnList.append(",");
+            }
+            columnList.append(columns[i]);
+        }
+        //本批最后一行的rowid
+        String endSql = "select max(rowid) from (select rowid from " + fromTable
+                + " where rowid > ? order by rowid limit " + batchSize + ")";
+        String copySql = "insert into " + toTable + "(" + columnList + ") select " + columnList
+                + " from " + fromTable + " where rowid > ? and rowid <= ?";
+        SQLiteStatement copyStatement = db.compileStatement(copySql);
+        long lastRowId = Long.MIN_VALUE;
+        int count = 0;
+        try {
+            while (true) {
+                Long endRowId = null;
+                Cursor cursor = db.rawQuery(endSql, new String[]{String.valueOf(lastRowId)});
+                try {
+                    if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                        endRowId = cursor.getLong(0);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (null == endRowId) {
+                    return count;
+                }
+                copyStatement.bindLong(1, lastRowId);
+                copyStatement.bindLong(2, endRowId);
+                count += copyStatement.executeUpdateDelete();
+                lastRowId = endRowId;
+            }
+        } finally {
+            copyStatement.close();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.library.base.thread;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主线程相关的调度, 用于启动后"稍后执行"的工作, 避免和界面绘制抢占主线程
+ * 1.runWhenIdle: 主线程空闲时执行(MessageQueue.IdleHandler), 每次空闲只执行一个
+ * 2.runInBackground: 延迟后在ThreadManager中以低优先级执行
+ * 3.runInFrames: 在主线程按帧执行, 每帧最多占用frameBudget, 长任务拆成多段
+ * 所有方法都可以在任意线程调用
+ * Created by admin on 2017/1/3.
+ */
+public class MainThreadScheduler {
+
+    //每帧分段任务最多占用的时间(毫秒)
+    private static final long DEFAULT_FRAME_BUDGET = 4;
+
+    //没有Choreographer时的帧间隔(毫秒)
+    private static final long FRAME_INTERVAL = 16;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    //以下只在主线程访问
+    private final LinkedList<Runnable> mIdleTasks = new LinkedList<>();
+    private final List<SliceTask> mSliceTasks = new ArrayList<>();
+    private boolean mIdleHandlerAdded;
+    private boolean mFrameScheduled;
+    private int mSliceIndex;
+    private long mFrameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FRAME_BUDGET);
+
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            Runnable task = mIdleTasks.poll();
+            if (null != task) {
+                task.run();
+            }
+            mIdleHandlerAdded = !mIdleTasks.isEmpty();
+            return mIdleHandlerAdded;
+        }
+    };
+
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    private Object mFrameCallback;
+
+    private MainThreadScheduler() {
+
+    }
+
+    private static class MainThreadSchedulerInstances {
+        private static MainThreadScheduler sMainThreadScheduler = new MainThreadScheduler();
+    }
+
+    public static MainThreadScheduler getInstances() {
+        return MainThreadSchedulerInstances.sMainThreadScheduler;
+    }
+
+    /***
+     * 设置每帧分段任务最多占用的时间
+     *
+     * @param frameBudget 毫秒
+     */
+    public void setFrameBudget(final long frameBudget) {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mFrameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, frameBudget));
+            }
+        });
+    }
+
+    /***
+     * 主线程空闲时执行
+     *
+     * @param task
+     */
+    public void runWhenIdle(final Runnable task) {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mIdleTasks.add(task);
+                if (!mIdleHandlerAdded) {
+                    mIdleHandlerAdded = true;
+                    Looper.myQueue().addIdleHandler(mIdleHandler);
+                }
+            }
+        });
+    }
+
+    /***
+     * 主线程空闲时执行, 超过maxDelay仍未空闲时直接执行
+     *
+     * @param task
+     * @param maxDelay 毫秒
+     */
+    public void runWhenIdle(final Runnable task, long maxDelay) {
+        final Runnable once = new Runnable() {
+            private boolean mDone;
+
+            @Override
+            public void run() {
+                if (mDone) {
+                    return;
+                }
+                mDone = true;
+                mIdleTasks.remove(this);
+                task.run();
+            }
+        };
+        runWhenIdle(once);
+        mHandler.postDelayed(once, maxDelay);
+    }
+
+    /***
+     * 延迟后在后台线程以最低优先级执行
+     *
+     * @param task
+     * @param delay 毫秒
+     */
+    public void runInBackground(Runnable task, long delay) {
+        runInBackground(task, Thread.MIN_PRIORITY, delay);
+    }
+
+    /***
+     * 延迟后在后台线程执行
+     *
+     * @param task
+     * @param priority 优先级(1~10)
+     * @param delay    毫秒
+     */
+    public void runInBackground(final Runnable task, int priority, long delay) {
+        final PriorityRunnable priorityRunnable = new PriorityRunnable() {
+            @Override
+            public void run() {
+                task.run();
+            }
+        };
+        priorityRunnable.setPriority(priority);
+        if (delay <= 0) {
+            ThreadManager.getInstances().execute(priorityRunnable);
+            return;
+        }
+        mHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                ThreadManager.getInstances().execute(priorityRunnable);
+            }
+        }, delay);
+    }
+
+    /***
+     * 在主线程按帧分段执行, 多个任务轮流执行
+     *
+     * @param sliceTask
+     */
+    public void runInFrames(final SliceTask sliceTask) {
+        runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mSliceTasks.add(sliceTask);
+                scheduleFrame();
+            }
+        });
+    }
+
+    private void doFrame() {
+        mFrameScheduled = false;
+        long deadline = System.nanoTime() + mFrameBudgetNanos;
+        while (!mSliceTasks.isEmpty() && System.nanoTime() < deadline) {
+            if (mSliceIndex >= mSliceTasks.size()) {
+                mSliceIndex = 0;
+            }
+            SliceTask sliceTask = mSliceTasks.get(mSliceIndex);
+            if (sliceTask.runSlice()) {
+                mSliceIndex++;
+            } else {
+                mSliceTasks.remove(mSliceIndex);
+            }
+        }
+        if (!mSliceTasks.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            mHandler.postDelayed(mFrameRunnable, FRAME_INTERVAL);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (null == mFrameCallback) {
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    MainThreadScheduler.this.doFrame();
+                }
+            };
+        }
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+    }
+
+    private void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mHandler.post(runnable);
+        }
+    }
+}
@@ -3,15 +3,54 @@ package com.library.base.thread;
 import java.util.Comparator;
 
 /**
+ * 优先级高的排在前面, 优先级相同时先提交的排在前面
+ * 设置agingInterval后, 任务每等待agingInterval毫秒相当于提升一级优先级, 避免低优先级任务一直得不到执行
+ * 比较结果只和提交时间有关, 不随当前时间变化, 可以用于堆排序
  * Created by admin on 2016/11/16.
  */
 
 public class PriorityComparator<T extends PriorityRunnable> implements Comparator<T> {
+
+    private final long agingInterval;
+
+    public PriorityComparator() {
+        this(0);
+    }
+
+    /***
+     * @param agingInterval 提升一级优先级需要等待的时间(毫秒), <=0时不提升
+     */
+    public PriorityComparator(long agingInterval) {
+        this.agingInterval = agingInterval;
+    }
+
+    public long getAgingInterval() {
+        return agingInterval;
+    }
+
+    public boolean isAging() {
+        return agingInterval > 0;
+    }
+
     @Override
     public int compare(T o1, T o2) {
         if (null == o1 || null == o2) {
             return 0;
         }
-        return o2.getPriority() - o1.getPriority();
+        if (isAging()) {
+            //等效提交时间: 优先级每高一级相当于提前agingInterval提交
+            long score1 = o1.getSubmitTime() - o1.getPriority() * agingInterval;
+            long score2 = o2.getSubmitTime() - o2.getPriority() * agingInterval;
+            if (score1 != score2) {
+                return score1 < score2 ? -1 : 1;
+            }
+        }
+        if (o1.getPriority() != o2.getPriority()) {
+            return o2.getPriority() - o1.getPriority();
+        }
+        if (o1.getSequence() != o2.getSequence()) {
+            return o1.getSequence() < o2.getSequence() ? -1 : 1;
+        }
+        return 0;
     }
 }
@@ -8,6 +8,12 @@ public abstract class PriorityRunnable implements Runnable {
 
     private int priority = Thread.NORM_PRIORITY;
 
+    //提交顺序, 优先级相同时先提交的先执行
+    private volatile long sequence;
+
+    //提交时间(毫秒, 单调时钟), 只用于比较等待时间
+    private volatile long submitTime;
+
     public int getPriority() {
         return priority;
     }
@@ -15,4 +21,32 @@ public abstract class PriorityRunnable implements Runnable {
     public void setPriority(int priority) {
         this.priority = priority;
     }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getSubmitTime() {
+        return submitTime;
+    }
+
+    /***
+     * 提交到线程池时记录顺序和时间, 同一个任务重复提交时以最后一次为准
+     *
+     * @param sequence
+     * @param submitTime
+     */
+    void onSubmit(long sequence, long submitTime) {
+        this.sequence = sequence;
+        this.submitTime = submitTime;
+    }
+
+    /***
+     * 统计时使用的任务类型, 包装类返回实际任务的类型
+     *
+     * @return
+     */
+    Class<?> getTaskClass() {
+        return getClass();
+    }
 }
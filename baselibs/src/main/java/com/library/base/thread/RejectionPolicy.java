@@ -0,0 +1,20 @@
+package com.library.base.thread;
+
+/**
+ * 任务数超过上限时的处理方式
+ * Created by admin on 2016/12/28.
+ */
+public enum RejectionPolicy {
+
+    //抛出RejectedExecutionException
+    ABORT,
+
+    //在提交任务的线程直接执行
+    CALLER_RUNS,
+
+    //丢弃新任务
+    DISCARD,
+
+    //丢弃排队中优先级最低的任务, 新任务优先级更低时丢弃新任务
+    DISCARD_LOWEST
+}
@@ -0,0 +1,15 @@
+package com.library.base.thread;
+
+/**
+ * 可以分段执行的主线程任务, 每次执行一小段
+ * Created by admin on 2017/1/3.
+ */
+public interface SliceTask {
+
+    /***
+     * 执行一段, 在主线程调用, 每段应控制在1毫秒左右
+     *
+     * @return 是否还有剩余
+     */
+    boolean runSlice();
+}
@@ -0,0 +1,194 @@
+package com.library.base.thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 带结果、可取消的任务
+ * 取消排队中的任务只修改状态(O(1)), 轮到执行时直接跳过; 取消执行中的任务会中断执行线程
+ * Created by admin on 2016/12/29.
+ */
+public class TaskFuture<V> extends PriorityRunnable implements Future<V> {
+
+    private static final int NEW = 0;
+    private static final int RUNNING = 1;
+    private static final int SUCCESS = 2;
+    private static final int FAILURE = 3;
+    private static final int CANCELLED = 4;
+
+    private final Callable<V> mCallable;
+
+    private int mState = NEW;
+
+    private V mResult;
+
+    private Throwable mException;
+
+    //执行线程, 用于中断
+    private Thread mRunner;
+
+    //是否因超时取消
+    private boolean mTimeout;
+
+    //结束时执行(移出分组、取消超时)
+    private Runnable mOnDone;
+
+    public TaskFuture(Callable<V> callable) {
+        if (null == callable) {
+            throw new NullPointerException("callable is not null");
+        }
+        mCallable = callable;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (mState != NEW) {
+                //已取消
+                return;
+            }
+            mState = RUNNING;
+            mRunner = Thread.currentThread();
+        }
+        V result = null;
+        Throwable exception = null;
+        try {
+            result = mCallable.call();
+        } catch (Throwable e) {
+            exception = e;
+        }
+        Runnable onDone;
+        synchronized (this) {
+            mRunner = null;
+            if (mState == CANCELLED) {
+                //清除取消时设置的中断状态, 避免影响线程中的下一个任务
+                Thread.interrupted();
+                return;
+            }
+            mState = null == exception ? SUCCESS : FAILURE;
+            mResult = result;
+            mException = exception;
+            onDone = mOnDone;
+            mOnDone = null;
+            notifyAll();
+        }
+        if (null != onDone) {
+            onDone.run();
+        }
+    }
+
+    /***
+     * 取消
+     *
+     * @param mayInterruptIfRunning 执行中时是否中断执行线程
+     * @return
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Runnable onDone;
+        synchronized (this) {
+            if (mState != NEW && mState != RUNNING) {
+                return false;
+            }
+            if (mState == RUNNING && mayInterruptIfRunning && null != mRunner) {
+                mRunner.interrupt();
+            }
+            mState = CANCELLED;
+            onDone = mOnDone;
+            mOnDone = null;
+            notifyAll();
+        }
+        if (null != onDone) {
+            onDone.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState >= SUCCESS;
+    }
+
+    /***
+     * 是否因超时被取消
+     *
+     * @return
+     */
+    public synchronized boolean isTimeout() {
+        return mTimeout;
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (mState < SUCCESS) {
+            wait();
+        }
+        return getDone();
+    }
+
+    @Override
+    public synchronized V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState < SUCCESS) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getDone();
+    }
+
+    /***
+     * 超时取消, 中断执行线程
+     */
+    void timeout() {
+        synchronized (this) {
+            if (mState != NEW && mState != RUNNING) {
+                return;
+            }
+            mTimeout = true;
+        }
+        cancel(true);
+    }
+
+    /***
+     * 设置结束时执行的操作, 已结束时直接执行
+     *
+     * @param onDone
+     */
+    void setOnDone(Runnable onDone) {
+        synchronized (this) {
+            if (mState < SUCCESS) {
+                mOnDone = onDone;
+                return;
+            }
+        }
+        onDone.run();
+    }
+
+    @Override
+    Class<?> getTaskClass() {
+        return mCallable.getClass();
+    }
+
+    private V getDone() throws ExecutionException {
+        switch (mState) {
+            case SUCCESS:
+                return mResult;
+            case FAILURE:
+                throw new ExecutionException(mException);
+            default:
+                throw new CancellationException(mTimeout ? "task is timeout" : "task is cancel");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.library.base.thread;
+
+/**
+ * 一种任务(按PriorityRunnable的类)在统计周期内的耗时, 只统计采样到的任务
+ * 排队时间单位毫秒, 执行时间单位微秒(小任务通常不到1毫秒)
+ * Created by admin on 2016/12/30.
+ */
+public class TaskStats {
+
+    String name;
+    int count;
+    long totalWaitTime;
+    long maxWaitTime;
+    long totalRunTime;
+    long maxRunTime;
+
+    TaskStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getAverageWaitTime() {
+        return count == 0 ? 0 : totalWaitTime / count;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public long getAverageRunTime() {
+        return count == 0 ? 0 : totalRunTime / count;
+    }
+
+    public long getMaxRunTime() {
+        return maxRunTime;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskStats{" +
+                "name='" + name + '\'' +
+                ", count=" + count +
+                ", wait=" + getAverageWaitTime() + "/" + maxWaitTime +
+                ", run=" + getAverageRunTime() + "/" + maxRunTime +
+                '}';
+    }
+}
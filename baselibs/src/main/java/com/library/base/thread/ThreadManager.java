@@ -1,9 +1,14 @@
 package com.library.base.thread;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -12,26 +17,36 @@ import java.util.concurrent.TimeUnit;
 
 public class ThreadManager {
 
-    private ThreadPoolExecutor mThreadPoolExecutor;
+    //排队任务上限, 超过后在提交任务的线程执行, 任务不会丢失
+    private static final int CAPACITY = 10000;
 
-    private PriorityBlockingQueue<Runnable> mPriorityBlockingQueue;
+    private static final long AGING_INTERVAL = 1000;
+
+    //每16个任务统计一个任务的耗时
+    private static final int SAMPLE_INTERVAL = 16;
+
+    private WorkStealingExecutor mExecutor;
+
+    //按owner(如Activity)分组的任务, 只弱引用owner, 任务结束后从分组移除
+    //空分组在owner被回收或cancelGroup后移除; 未结束的任务如果引用了owner, owner在任务结束前不会被回收
+    private final Map<Object, Set<TaskFuture<?>>> mGroups = new WeakHashMap<>();
+
+    //超时检查
+    private ScheduledExecutorService mTimeoutExecutor;
 
     private ThreadManager() {
-        mPriorityBlockingQueue = new PriorityBlockingQueue<>(10, new PriorityComparator());
-        mThreadPoolExecutor = new ThreadPoolExecutor(
+        mExecutor = new WorkStealingExecutor(
                 Runtime.getRuntime().availableProcessors(),
                 Runtime.getRuntime().availableProcessors() * 2 + 1,
-                0,
+                30,
                 TimeUnit.SECONDS,
-                mPriorityBlockingQueue,
-                Executors.defaultThreadFactory(),
-                new RejectedExecutionHandler() {
-                    @Override
-                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-
-                    }
-                }
+                CAPACITY,
+                RejectionPolicy.CALLER_RUNS
         );
+        //每等待1秒提升一级优先级, 最低优先级的任务等待9秒后排在新提交的最高优先级任务之前
+        mExecutor.setAgingInterval(AGING_INTERVAL, TimeUnit.MILLISECONDS);
+        //采样统计, 开销很小, 正式包也保持开启
+        mExecutor.setThreadMetrics(new ThreadMetrics(mExecutor, SAMPLE_INTERVAL));
     }
 
     private static class ThreadManagerInstances {
@@ -43,22 +58,149 @@ public class ThreadManager {
     }
 
     public <T extends PriorityRunnable> void execute(T t) {
-        if (null == t || null == mThreadPoolExecutor) {
+        if (null == t) {
             return;
         }
-        synchronized (mThreadPoolExecutor) {
-            mThreadPoolExecutor.execute(t);
-        }
+        mExecutor.execute(t);
     }
 
     public <T extends PriorityRunnable> void remove(T t) {
-        if (null == t || null == mThreadPoolExecutor) {
+        if (null == t) {
             return;
         }
-        synchronized (mThreadPoolExecutor) {
-            if (mThreadPoolExecutor.getQueue().contains(t)) {
-                mThreadPoolExecutor.remove(t);
+        if (t instanceof TaskFuture) {
+            //TaskFuture直接取消, 不需要在队列中查找
+            ((TaskFuture<?>) t).cancel(false);
+            return;
+        }
+        mExecutor.remove(t);
+    }
+
+    /***
+     * 线程池, 可直接提交普通Runnable
+     *
+     * @return
+     */
+    public WorkStealingExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    /***
+     * 线程池统计, 可设置定时快照回调(如调试浮层)
+     *
+     * @return
+     */
+    public ThreadMetrics getThreadMetrics() {
+        return mExecutor.getThreadMetrics();
+    }
+
+    /***
+     * 提交带结果的任务
+     *
+     * @param callable
+     * @return 可取消的TaskFuture
+     */
+    public <V> TaskFuture<V> submit(Callable<V> callable) {
+        return submit(null, callable, Thread.NORM_PRIORITY, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * 提交带结果的任务
+     *
+     * @param owner    分组, 可以为null; 调用cancelGroup(owner)取消该组所有任务
+     * @param callable
+     * @param priority 优先级(1~10)
+     * @return
+     */
+    public <V> TaskFuture<V> submit(Object owner, Callable<V> callable, int priority) {
+        return submit(owner, callable, priority, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * 提交带结果的任务
+     *
+     * @param owner    分组, 可以为null; 调用cancelGroup(owner)取消该组所有任务
+     * @param callable
+     * @param priority 优先级(1~10)
+     * @param timeout  从提交开始计算的超时时间, 超时后取消并中断, <=0不超时
+     * @param unit
+     * @return
+     */
+    public <V> TaskFuture<V> submit(Object owner, Callable<V> callable, int priority, long timeout, TimeUnit unit) {
+        final TaskFuture<V> taskFuture = new TaskFuture<>(callable);
+        taskFuture.setPriority(priority);
+        Set<TaskFuture<?>> ownerGroup = null;
+        if (null != owner) {
+            synchronized (mGroups) {
+                ownerGroup = mGroups.get(owner);
+                if (null == ownerGroup) {
+                    ownerGroup = Collections.newSetFromMap(new IdentityHashMap<TaskFuture<?>, Boolean>());
+                    mGroups.put(owner, ownerGroup);
+                }
+                ownerGroup.add(taskFuture);
             }
         }
+        //完成回调只持有分组, 不持有owner, 否则WeakHashMap的key一直可达
+        final Set<TaskFuture<?>> group = ownerGroup;
+        final ScheduledFuture<?> timeoutFuture = timeout > 0 ? scheduleTimeout(taskFuture, timeout, unit) : null;
+        if (null != group || null != timeoutFuture) {
+            taskFuture.setOnDone(new Runnable() {
+                @Override
+                public void run() {
+                    if (null != timeoutFuture) {
+                        timeoutFuture.cancel(false);
+                    }
+                    if (null != group) {
+                        removeFromGroup(group, taskFuture);
+                    }
+                }
+            });
+        }
+        mExecutor.execute(taskFuture);
+        return taskFuture;
+    }
+
+    /***
+     * 取消owner的所有任务: 排队中的直接跳过, 执行中的中断
+     * 一般在Activity的onDestroy中调用
+     *
+     * @param owner
+     */
+    public void cancelGroup(Object owner) {
+        if (null == owner) {
+            return;
+        }
+        Set<TaskFuture<?>> group;
+        synchronized (mGroups) {
+            group = mGroups.remove(owner);
+        }
+        if (null == group) {
+            return;
+        }
+        TaskFuture<?>[] taskFutures;
+        synchronized (mGroups) {
+            taskFutures = group.toArray(new TaskFuture<?>[group.size()]);
+        }
+        for (TaskFuture<?> taskFuture : taskFutures) {
+            taskFuture.cancel(true);
+        }
+    }
+
+    private void removeFromGroup(Set<TaskFuture<?>> group, TaskFuture<?> taskFuture) {
+        synchronized (mGroups) {
+            group.remove(taskFuture);
+        }
+    }
+
+    private synchronized ScheduledFuture<?> scheduleTimeout(final TaskFuture<?> taskFuture, long timeout, TimeUnit unit) {
+        if (null == mTimeoutExecutor) {
+            mTimeoutExecutor = Executors.newSingleThreadScheduledExecutor();
+        }
+        return mTimeoutExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                taskFuture.timeout();
+            }
+        }, timeout, unit);
     }
 }
@@ -0,0 +1,175 @@
+package com.library.base.thread;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程池统计: 每种任务的排队时间和执行时间, 排队数, 执行中和峰值线程数, 拒绝数
+ * 任务耗时按提交顺序采样(每sampleInterval个任务统计一个), 开销很小, 可以在正式包中开启
+ * 快照按周期在主线程回调, 可用于调试浮层或上报
+ * Created by admin on 2016/12/30.
+ */
+public class ThreadMetrics {
+
+    public interface OnSnapshotListener {
+
+        /***
+         * 主线程回调
+         *
+         * @param snapshot
+         */
+        void onSnapshot(ThreadPoolSnapshot snapshot);
+    }
+
+    private final WorkStealingExecutor mExecutor;
+
+    private final int mSampleInterval;
+
+    private final ConcurrentHashMap<Class<?>, TaskStats> mTaskStats = new ConcurrentHashMap<>();
+
+    private final AtomicInteger mActiveCount = new AtomicInteger();
+
+    private final AtomicInteger mPeakActiveCount = new AtomicInteger();
+
+    private final AtomicInteger mPeakQueueSize = new AtomicInteger();
+
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private OnSnapshotListener mOnSnapshotListener;
+
+    private long mSnapshotInterval;
+
+    private final Runnable mSnapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            OnSnapshotListener onSnapshotListener;
+            synchronized (ThreadMetrics.this) {
+                onSnapshotListener = mOnSnapshotListener;
+                if (null == onSnapshotListener) {
+                    return;
+                }
+                mHandler.postDelayed(this, mSnapshotInterval);
+            }
+            onSnapshotListener.onSnapshot(snapshot());
+        }
+    };
+
+    /***
+     * @param executor
+     * @param sampleInterval 每sampleInterval个任务统计一次耗时, 1为全部统计
+     */
+    public ThreadMetrics(WorkStealingExecutor executor, int sampleInterval) {
+        mExecutor = executor;
+        mSampleInterval = Math.max(1, sampleInterval);
+    }
+
+    /***
+     * 定时回调快照
+     *
+     * @param onSnapshotListener 为null时停止
+     * @param interval           间隔(毫秒)
+     */
+    public synchronized void setOnSnapshotListener(OnSnapshotListener onSnapshotListener, long interval) {
+        mHandler.removeCallbacks(mSnapshotRunnable);
+        mOnSnapshotListener = onSnapshotListener;
+        mSnapshotInterval = Math.max(100, interval);
+        if (null != onSnapshotListener) {
+            mHandler.postDelayed(mSnapshotRunnable, mSnapshotInterval);
+        }
+    }
+
+    /***
+     * 获取快照并开始新的统计周期
+     *
+     * @return
+     */
+    public ThreadPoolSnapshot snapshot() {
+        ThreadPoolSnapshot snapshot = new ThreadPoolSnapshot();
+        snapshot.time = System.currentTimeMillis();
+        snapshot.poolSize = mExecutor.getPoolSize();
+        snapshot.activeCount = mActiveCount.get();
+        snapshot.peakActiveCount = Math.max(snapshot.activeCount, mPeakActiveCount.getAndSet(snapshot.activeCount));
+        snapshot.queueSize = mExecutor.getQueueSize();
+        snapshot.peakQueueSize = Math.max(snapshot.queueSize, mPeakQueueSize.getAndSet(0));
+        snapshot.rejectedCount = mRejectedCount.getAndSet(0);
+        List<TaskStats> taskStats = new ArrayList<>(mTaskStats.size());
+        for (Class<?> taskClass : mTaskStats.keySet()) {
+            TaskStats stats = mTaskStats.remove(taskClass);
+            if (null != stats) {
+                //复制一份, 正在记录的线程可能还持有旧对象
+                TaskStats copy = new TaskStats(stats.name);
+                synchronized (stats) {
+                    copy.count = stats.count;
+                    copy.totalWaitTime = stats.totalWaitTime;
+                    copy.maxWaitTime = stats.maxWaitTime;
+                    copy.totalRunTime = stats.totalRunTime;
+                    copy.maxRunTime = stats.maxRunTime;
+                }
+                taskStats.add(copy);
+            }
+        }
+        snapshot.taskStats = taskStats;
+        return snapshot;
+    }
+
+    boolean isSampled(PriorityRunnable task) {
+        return task.getSequence() % mSampleInterval == 0;
+    }
+
+    void onRunStart() {
+        int active = mActiveCount.incrementAndGet();
+        updateMax(mPeakActiveCount, active);
+    }
+
+    void onRunEnd() {
+        mActiveCount.decrementAndGet();
+    }
+
+    void onRejected() {
+        mRejectedCount.incrementAndGet();
+    }
+
+    /***
+     * 记录采样任务的耗时
+     *
+     * @param task
+     * @param waitTime 排队时间(毫秒)
+     * @param runTime  执行时间(微秒)
+     */
+    void record(PriorityRunnable task, long waitTime, long runTime) {
+        updateMax(mPeakQueueSize, mExecutor.getQueueSize());
+        Class<?> taskClass = task.getTaskClass();
+        TaskStats stats = mTaskStats.get(taskClass);
+        if (null == stats) {
+            TaskStats newStats = new TaskStats(taskClass.getName());
+            stats = mTaskStats.putIfAbsent(taskClass, newStats);
+            if (null == stats) {
+                stats = newStats;
+            }
+        }
+        synchronized (stats) {
+            stats.count++;
+            stats.totalWaitTime += waitTime;
+            stats.maxWaitTime = Math.max(stats.maxWaitTime, waitTime);
+            stats.totalRunTime += runTime;
+            stats.maxRunTime = Math.max(stats.maxRunTime, runTime);
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        while (true) {
+            int current = max.get();
+            if (value <= current || max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+}
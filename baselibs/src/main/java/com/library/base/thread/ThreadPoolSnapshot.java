@@ -0,0 +1,67 @@
+package com.library.base.thread;
+
+import java.util.List;
+
+/**
+ * 线程池统计快照, 计数为上次快照之后的值
+ * Created by admin on 2016/12/30.
+ */
+public class ThreadPoolSnapshot {
+
+    long time;
+    int poolSize;
+    int activeCount;
+    //统计周期内同时执行任务的最大线程数
+    int peakActiveCount;
+    int queueSize;
+    //统计周期内采样到的最大排队数
+    int peakQueueSize;
+    long rejectedCount;
+    List<TaskStats> taskStats;
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getPeakActiveCount() {
+        return peakActiveCount;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public List<TaskStats> getTaskStats() {
+        return taskStats;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadPoolSnapshot{" +
+                "time=" + time +
+                ", poolSize=" + poolSize +
+                ", activeCount=" + activeCount +
+                ", peakActiveCount=" + peakActiveCount +
+                ", queueSize=" + queueSize +
+                ", peakQueueSize=" + peakQueueSize +
+                ", rejectedCount=" + rejectedCount +
+                ", taskStats=" + taskStats +
+                '}';
+    }
+}
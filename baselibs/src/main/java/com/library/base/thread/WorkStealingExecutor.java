@@ -0,0 +1,488 @@
+package com.library.base.thread;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按优先级分道、工作窃取的线程池
+ * 1.每个线程有自己的任务队列(每个优先级一条), 线程内提交的任务放入自己的队列, 其他线程提交的放入公共队列
+ * 2.取任务时按PriorityComparator在自己的队列、公共队列和其他线程队列的队头中选择(优先级相同时先提交的先执行, 可设置等待提升优先级),
+ * 其他线程队列中的任务被窃取执行
+ * 3.线程数在coreSize和maxSize之间伸缩, 空闲超过keepAlive的非核心线程退出
+ * 4.排队任务数超过capacity时按RejectionPolicy处理
+ * 队列都是无锁的ConcurrentLinkedQueue, 提交和取任务不需要加锁
+ * Created by admin on 2016/12/28.
+ */
+public class WorkStealingExecutor implements Executor {
+
+    private static final String TAG = "WorkStealingExecutor";
+
+    //优先级范围同Thread: 1~10, 每个优先级一条队列
+    private static final int LANE_COUNT = Thread.MAX_PRIORITY - Thread.MIN_PRIORITY + 1;
+
+    private static final ThreadLocal<Worker> sCurrentWorker = new ThreadLocal<>();
+
+    private final int mCoreSize;
+
+    private final int mMaxSize;
+
+    private final long mKeepAliveNanos;
+
+    private final int mCapacity;
+
+    private final RejectionPolicy mRejectionPolicy;
+
+    private final ThreadFactory mThreadFactory;
+
+    private final ConcurrentLinkedQueue<Runnable>[] mGlobalLanes = newLanes();
+
+    private final List<Worker> mWorkers = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentLinkedQueue<Worker> mIdleWorkers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger mWorkerCount = new AtomicInteger();
+
+    //排队中的任务数
+    private final AtomicInteger mQueueSize = new AtomicInteger();
+
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private volatile PriorityComparator<PriorityRunnable> mComparator = new PriorityComparator<>();
+
+    private volatile ThreadMetrics mThreadMetrics;
+
+    public WorkStealingExecutor(int coreSize, int maxSize, long keepAlive, TimeUnit unit, int capacity, RejectionPolicy rejectionPolicy) {
+        this(coreSize, maxSize, keepAlive, unit, capacity, rejectionPolicy, Executors.defaultThreadFactory());
+    }
+
+    public WorkStealingExecutor(int coreSize, int maxSize, long keepAlive, TimeUnit unit, int capacity, RejectionPolicy rejectionPolicy, ThreadFactory threadFactory) {
+        if (coreSize < 1 || maxSize < coreSize || keepAlive < 0 || capacity < 1) {
+            throw new IllegalArgumentException("illegal pool size, keepAlive or capacity");
+        }
+        if (null == rejectionPolicy || null == threadFactory) {
+            throw new NullPointerException("rejectionPolicy and threadFactory is not null");
+        }
+        mCoreSize = coreSize;
+        mMaxSize = maxSize;
+        mKeepAliveNanos = unit.toNanos(keepAlive);
+        mCapacity = capacity;
+        mRejectionPolicy = rejectionPolicy;
+        mThreadFactory = threadFactory;
+    }
+
+    /***
+     * 提交任务, PriorityRunnable按优先级执行, 其余按Thread.NORM_PRIORITY
+     *
+     * @param command
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (null == command) {
+            throw new NullPointerException("command is not null");
+        }
+        PriorityRunnable task = command instanceof PriorityRunnable ? (PriorityRunnable) command : new RunnableAdapter(command);
+        if (mQueueSize.incrementAndGet() > mCapacity) {
+            mQueueSize.decrementAndGet();
+            if (!reject(task)) {
+                return;
+            }
+            mQueueSize.incrementAndGet();
+        }
+        task.onSubmit(mSequence.getAndIncrement(), now());
+        int lane = laneOf(task);
+        Worker worker = sCurrentWorker.get();
+        if (null != worker && worker.mExecutor == this) {
+            worker.mLanes[lane].offer(task);
+        } else {
+            mGlobalLanes[lane].offer(task);
+        }
+        signalWork();
+    }
+
+    /***
+     * 移除排队中的任务
+     *
+     * @param command
+     * @return 是否移除成功, 已开始执行的任务返回false
+     */
+    public boolean remove(Runnable command) {
+        if (null == command) {
+            return false;
+        }
+        int lane = laneOf(command);
+        boolean removed = removeFrom(mGlobalLanes[lane], command);
+        if (!removed) {
+            for (Worker worker : mWorkers) {
+                if (removeFrom(worker.mLanes[lane], command)) {
+                    removed = true;
+                    break;
+                }
+            }
+        }
+        if (removed) {
+            mQueueSize.decrementAndGet();
+        }
+        return removed;
+    }
+
+    /***
+     * 设置等待提升优先级的时间
+     *
+     * @param agingInterval 每等待agingInterval提升一级优先级, <=0时不提升
+     * @param unit
+     */
+    public void setAgingInterval(long agingInterval, TimeUnit unit) {
+        mComparator = new PriorityComparator<>(unit.toMillis(agingInterval));
+    }
+
+    /***
+     * 开启统计, 为null时关闭
+     *
+     * @param threadMetrics
+     */
+    public void setThreadMetrics(ThreadMetrics threadMetrics) {
+        mThreadMetrics = threadMetrics;
+    }
+
+    public ThreadMetrics getThreadMetrics() {
+        return mThreadMetrics;
+    }
+
+    /***
+     * 当前线程数
+     *
+     * @return
+     */
+    public int getPoolSize() {
+        return mWorkerCount.get();
+    }
+
+    /***
+     * 排队中的任务数
+     *
+     * @return
+     */
+    public int getQueueSize() {
+        return mQueueSize.get();
+    }
+
+    /***
+     * 超出上限时处理
+     *
+     * @return 是否仍然放入队列
+     */
+    private boolean reject(Runnable command) {
+        ThreadMetrics threadMetrics = mThreadMetrics;
+        if (null != threadMetrics) {
+            threadMetrics.onRejected();
+        }
+        switch (mRejectionPolicy) {
+            case CALLER_RUNS:
+                command.run();
+                return false;
+            case DISCARD:
+                discard(command);
+                return false;
+            case DISCARD_LOWEST:
+                if (discardLowerThan(laneOf(command))) {
+                    return true;
+                }
+                discard(command);
+                return false;
+            case ABORT:
+            default:
+                throw new RejectedExecutionException("queue is full, capacity: " + mCapacity);
+        }
+    }
+
+    /***
+     * 丢弃一个比lane优先级低的排队任务
+     */
+    private boolean discardLowerThan(int lane) {
+        for (int i = LANE_COUNT - 1; i > lane; i--) {
+            Runnable discarded = mGlobalLanes[i].poll();
+            if (null == discarded) {
+                for (Worker worker : mWorkers) {
+                    discarded = worker.mLanes[i].poll();
+                    if (null != discarded) {
+                        break;
+                    }
+                }
+            }
+            if (null != discarded) {
+                mQueueSize.decrementAndGet();
+                discard(discarded);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /***
+     * 丢弃任务, Future需要取消, 否则get()一直阻塞, 完成回调也不会执行
+     */
+    private static void discard(Runnable command) {
+        Log.w(TAG, "task discarded: " + command);
+        Runnable task = command instanceof RunnableAdapter ? ((RunnableAdapter) command).mRunnable : command;
+        if (task instanceof Future) {
+            ((Future<?>) task).cancel(false);
+        }
+    }
+
+    /***
+     * 唤醒空闲线程, 没有空闲线程时按需创建
+     */
+    private void signalWork() {
+        Worker idle = mIdleWorkers.poll();
+        if (null != idle) {
+            LockSupport.unpark(idle.mThread);
+            return;
+        }
+        while (true) {
+            int count = mWorkerCount.get();
+            //核心线程直接创建; 超过核心数时只在排队任务多于线程数时扩容
+            if (count >= mMaxSize || (count >= mCoreSize && mQueueSize.get() <= count)) {
+                return;
+            }
+            if (mWorkerCount.compareAndSet(count, count + 1)) {
+                break;
+            }
+        }
+        Worker worker = new Worker(this);
+        Thread thread = mThreadFactory.newThread(worker);
+        worker.mThread = thread;
+        mWorkers.add(worker);
+        thread.start();
+    }
+
+    /***
+     * 在自己的队列、公共队列和其他线程队列(窃取)的队头中按PriorityComparator选择
+     * 其他线程的队列也参与比较, 避免忙碌线程自己提交的高优先级任务在公共队列一直有任务时得不到执行
+     * 不提升优先级时找到第一个有任务的优先级即可; 提升优先级时需要比较所有队头
+     */
+    private Runnable findTask(Worker worker) {
+        PriorityComparator<PriorityRunnable> comparator = mComparator;
+        Object[] workers = mWorkers.toArray();
+        //随机起点避免总是窃取同一个线程
+        int start = workers.length > 1 ? worker.mRandom.nextInt(workers.length) : 0;
+        while (true) {
+            ConcurrentLinkedQueue<Runnable> bestQueue = null;
+            PriorityRunnable best = null;
+            for (int lane = 0; lane < LANE_COUNT; lane++) {
+                //自己的队列最先比较, 优先级和提交顺序都相同时保持局部性
+                for (int i = -2; i < workers.length; i++) {
+                    ConcurrentLinkedQueue<Runnable> queue = laneQueue(worker, workers, start, lane, i);
+                    if (null == queue) {
+                        continue;
+                    }
+                    PriorityRunnable head = (PriorityRunnable) queue.peek();
+                    if (null != head && (null == best || comparator.compare(head, best) < 0)) {
+                        best = head;
+                        bestQueue = queue;
+                    }
+                }
+                if (null != best && !comparator.isAging()) {
+                    break;
+                }
+            }
+            if (null == bestQueue) {
+                return null;
+            }
+            //队头可能已被其他线程取走, 取到的是当前队头即可
+            Runnable task = bestQueue.poll();
+            if (null != task) {
+                mQueueSize.decrementAndGet();
+                return task;
+            }
+        }
+    }
+
+    /***
+     * 第index个候选队列: -2为自己的队列, -1为公共队列, 其余为其他线程的队列
+     */
+    private ConcurrentLinkedQueue<Runnable> laneQueue(Worker worker, Object[] workers, int start, int lane, int index) {
+        if (index == -2) {
+            return worker.mLanes[lane];
+        }
+        if (index == -1) {
+            return mGlobalLanes[lane];
+        }
+        Worker victim = (Worker) workers[(start + index) % workers.length];
+        return victim == worker ? null : victim.mLanes[lane];
+    }
+
+    /***
+     * 非核心线程空闲超时后退出
+     */
+    private boolean tryRetire() {
+        while (true) {
+            int count = mWorkerCount.get();
+            if (count <= mCoreSize) {
+                return false;
+            }
+            if (mWorkerCount.compareAndSet(count, count - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void runWorker(Worker worker) {
+        sCurrentWorker.set(worker);
+        while (true) {
+            Runnable task = findTask(worker);
+            if (null == task) {
+                mIdleWorkers.offer(worker);
+                //放入空闲队列后再检查一次, 避免错过刚提交的任务
+                task = findTask(worker);
+                if (null != task) {
+                    mIdleWorkers.remove(worker);
+                } else {
+                    long parkStart = System.nanoTime();
+                    LockSupport.parkNanos(this, mKeepAliveNanos);
+                    if (mIdleWorkers.remove(worker)) {
+                        //没有被唤醒: 超时或虚假唤醒
+                        if (System.nanoTime() - parkStart >= mKeepAliveNanos && tryRetire()) {
+                            break;
+                        }
+                    }
+                    continue;
+                }
+            }
+            ThreadMetrics threadMetrics = mThreadMetrics;
+            if (null == threadMetrics) {
+                runTask(worker, task);
+            } else {
+                runTask(worker, task, threadMetrics);
+            }
+        }
+        mWorkers.remove(worker);
+        sCurrentWorker.remove();
+        //退出前把自己队列中剩余的任务转到公共队列
+        for (int lane = 0; lane < LANE_COUNT; lane++) {
+            Runnable task;
+            while (null != (task = worker.mLanes[lane].poll())) {
+                mGlobalLanes[lane].offer(task);
+                signalWork();
+            }
+        }
+    }
+
+    private void runTask(Worker worker, Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            Thread.UncaughtExceptionHandler handler = worker.mThread.getUncaughtExceptionHandler();
+            if (null != handler) {
+                handler.uncaughtException(worker.mThread, e);
+            }
+        }
+    }
+
+    private void runTask(Worker worker, Runnable task, ThreadMetrics threadMetrics) {
+        PriorityRunnable priorityRunnable = (PriorityRunnable) task;
+        boolean sampled = threadMetrics.isSampled(priorityRunnable);
+        long waitTime = sampled ? now() - priorityRunnable.getSubmitTime() : 0;
+        long start = sampled ? System.nanoTime() : 0;
+        threadMetrics.onRunStart();
+        try {
+            runTask(worker, task);
+        } finally {
+            threadMetrics.onRunEnd();
+        }
+        if (sampled) {
+            threadMetrics.record(priorityRunnable, waitTime, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    /***
+     * 优先级越高lane越小
+     */
+    private static int laneOf(Runnable command) {
+        int priority = command instanceof PriorityRunnable ? ((PriorityRunnable) command).getPriority() : Thread.NORM_PRIORITY;
+        priority = Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, priority));
+        return Thread.MAX_PRIORITY - priority;
+    }
+
+    private static boolean removeFrom(ConcurrentLinkedQueue<Runnable> queue, Runnable command) {
+        Iterator<Runnable> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Runnable task = iterator.next();
+            if (task == command || (task instanceof RunnableAdapter && ((RunnableAdapter) task).mRunnable == command)) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ConcurrentLinkedQueue<Runnable>[] newLanes() {
+        ConcurrentLinkedQueue<Runnable>[] lanes = new ConcurrentLinkedQueue[LANE_COUNT];
+        for (int i = 0; i < LANE_COUNT; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<>();
+        }
+        return lanes;
+    }
+
+    private static class Worker implements Runnable {
+
+        final WorkStealingExecutor mExecutor;
+        final ConcurrentLinkedQueue<Runnable>[] mLanes = newLanes();
+        final Random mRandom = new Random();
+        volatile Thread mThread;
+
+        Worker(WorkStealingExecutor executor) {
+            this.mExecutor = executor;
+        }
+
+        @Override
+        public void run() {
+            mExecutor.runWorker(this);
+        }
+    }
+
+    /***
+     * 普通Runnable按Thread.NORM_PRIORITY执行
+     */
+    private static class RunnableAdapter extends PriorityRunnable {
+
+        final Runnable mRunnable;
+
+        RunnableAdapter(Runnable runnable) {
+            this.mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            mRunnable.run();
+        }
+
+        @Override
+        Class<?> getTaskClass() {
+            return mRunnable.getClass();
+        }
+
+        @Override
+        public String toString() {
+            return mRunnable.toString();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.library.base.thread;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按owner分组的任务
+ * Created by admin on 2017/1/12.
+ */
+public class ThreadManagerTest {
+
+    @Test
+    public void runningTaskDoesNotPinOwner() throws Exception {
+        Object owner = new Object();
+        WeakReference<Object> ownerRef = new WeakReference<>(owner);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        //任务本身不引用owner, 执行中owner也应该可以被回收
+        TaskFuture<Integer> taskFuture = ThreadManager.getInstances().submit(owner, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                started.countDown();
+                release.await();
+                return 1;
+            }
+        }, Thread.NORM_PRIORITY);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        owner = null;
+        try {
+            for (int i = 0; i < 50 && null != ownerRef.get(); i++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertNull(ownerRef.get());
+        } finally {
+            release.countDown();
+        }
+        assertEquals(Integer.valueOf(1), taskFuture.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelGroupCancelsPendingTasks() throws Exception {
+        Object owner = new Object();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        TaskFuture<Integer> taskFuture = ThreadManager.getInstances().submit(owner, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                started.countDown();
+                release.await();
+                return 1;
+            }
+        }, Thread.NORM_PRIORITY);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        ThreadManager.getInstances().cancelGroup(owner);
+        assertTrue(taskFuture.isCancelled());
+        release.countDown();
+    }
+}
@@ -0,0 +1,191 @@
+package com.library.base.thread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 1.10k个小PriorityRunnable, WorkStealingExecutor和原来ThreadManager的线程池对比
+ * 原来的线程池: PriorityBlockingQueue无界队列 + execute外加全局锁
+ * 2.接近满负载时各优先级的等待时间分布
+ * Created by admin on 2017/1/12.
+ */
+public class ThreadPoolBenchmarkTest {
+
+    private static final int TASKS = 10000;
+
+    private static final int SUBMITTERS = 4;
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int ROUNDS = 5;
+
+    private static final ThreadFactory DAEMON_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "benchmark-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Test
+    public void benchmarkAgainstLegacyThreadManager() throws InterruptedException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        final PriorityComparator<PriorityRunnable> comparator = new PriorityComparator<>();
+        final ThreadPoolExecutor legacyPool = new ThreadPoolExecutor(processors, processors * 2 + 1, 0, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(10, new Comparator<Runnable>() {
+                    @Override
+                    public int compare(Runnable o1, Runnable o2) {
+                        return comparator.compare((PriorityRunnable) o1, (PriorityRunnable) o2);
+                    }
+                }), DAEMON_FACTORY);
+        Executor legacy = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                synchronized (legacyPool) {
+                    legacyPool.execute(command);
+                }
+            }
+        };
+        WorkStealingExecutor workStealing = new WorkStealingExecutor(processors, processors * 2 + 1, 30, TimeUnit.SECONDS,
+                Integer.MAX_VALUE, RejectionPolicy.ABORT, DAEMON_FACTORY);
+        workStealing.setAgingInterval(1, TimeUnit.SECONDS);
+
+        long legacyMillis = median(legacy);
+        long workStealingMillis = median(workStealing);
+        System.out.println("10k PriorityRunnable, " + SUBMITTERS + " submitters: legacy ThreadManager " + legacyMillis
+                + " ms (pool " + legacyPool.getLargestPoolSize() + "), WorkStealingExecutor " + workStealingMillis
+                + " ms (pool " + workStealing.getPoolSize() + ")");
+        legacyPool.shutdown();
+    }
+
+    @Test
+    public void benchmarkTailWaitPerPriority() throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(2, 2, 30, TimeUnit.SECONDS,
+                Integer.MAX_VALUE, RejectionPolicy.ABORT, DAEMON_FACTORY);
+        executor.setAgingInterval(50, TimeUnit.MILLISECONDS);
+        final List<List<Long>> waits = new ArrayList<>();
+        for (int i = 0; i <= Thread.MAX_PRIORITY; i++) {
+            waits.add(Collections.synchronizedList(new ArrayList<Long>()));
+        }
+        //2个线程, 每个任务约1毫秒, 每10毫秒提交16个, 负载约80%, 突发时排队
+        int bursts = 200;
+        final CountDownLatch done = new CountDownLatch(bursts * 16);
+        Random random = new Random(1);
+        for (int burst = 0; burst < bursts; burst++) {
+            for (int i = 0; i < 16; i++) {
+                final int priority = random.nextInt(Thread.MAX_PRIORITY) + 1;
+                final long submitTime = System.nanoTime();
+                PriorityRunnable priorityRunnable = new PriorityRunnable() {
+                    @Override
+                    public void run() {
+                        waits.get(priority).add(System.nanoTime() - submitTime);
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        done.countDown();
+                    }
+                };
+                priorityRunnable.setPriority(priority);
+                executor.execute(priorityRunnable);
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        long maxWait = 0;
+        StringBuilder sb = new StringBuilder("wait per priority (p50/p99/max ms):");
+        for (int priority = Thread.MAX_PRIORITY; priority >= Thread.MIN_PRIORITY; priority--) {
+            List<Long> list = waits.get(priority);
+            Collections.sort(list);
+            if (list.isEmpty()) {
+                continue;
+            }
+            long max = list.get(list.size() - 1);
+            maxWait = Math.max(maxWait, max);
+            sb.append(" [").append(priority).append("] ")
+                    .append(toMillis(percentile(list, 50))).append('/')
+                    .append(toMillis(percentile(list, 99))).append('/')
+                    .append(toMillis(max));
+        }
+        System.out.println(sb);
+        //开启老化后, 最低优先级的等待也有上限
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(maxWait) < 5);
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percent / 100));
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static long median(Executor executor) throws InterruptedException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(executor);
+        }
+        long[] millis = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            millis[i] = run(executor);
+        }
+        Arrays.sort(millis);
+        return millis[ROUNDS / 2];
+    }
+
+    /***
+     * 多个线程同时提交, 返回全部执行完的时间(毫秒)
+     */
+    private static long run(final Executor executor) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(TASKS);
+        Thread[] submitters = new Thread[SUBMITTERS];
+        for (int i = 0; i < SUBMITTERS; i++) {
+            final int offset = i;
+            submitters[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = offset; j < TASKS; j += SUBMITTERS) {
+                        PriorityRunnable priorityRunnable = new PriorityRunnable() {
+                            @Override
+                            public void run() {
+                                done.countDown();
+                            }
+                        };
+                        priorityRunnable.setPriority(j % 10 + 1);
+                        executor.execute(priorityRunnable);
+                    }
+                }
+            });
+            submitters[i].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        return millis;
+    }
+}
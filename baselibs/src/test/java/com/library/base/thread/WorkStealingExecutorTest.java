@@ -0,0 +1,238 @@
+package com.library.base.thread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 同优先级FIFO、优先级老化和跨线程取高优先级任务
+ * Created by admin on 2017/1/12.
+ */
+public class WorkStealingExecutorTest {
+
+    private static final ThreadFactory DAEMON_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "test-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    @Test
+    public void comparatorKeepsSubmitOrderWithinPriority() {
+        PriorityComparator<PriorityRunnable> comparator = new PriorityComparator<>();
+        PriorityRunnable first = task(5, 0, 100);
+        PriorityRunnable second = task(5, 1, 0);
+        assertTrue(comparator.compare(first, second) < 0);
+        assertTrue(comparator.compare(second, first) > 0);
+        assertTrue(comparator.compare(task(6, 1, 0), first) < 0);
+    }
+
+    @Test
+    public void comparatorAgesWaitingTasks() {
+        PriorityComparator<PriorityRunnable> comparator = new PriorityComparator<>(100);
+        PriorityRunnable low = task(1, 0, 0);
+        //等待超过(10-1)*100毫秒后, 低优先级排在新提交的高优先级前面
+        assertTrue(comparator.compare(low, task(10, 1, 1000)) < 0);
+        assertTrue(comparator.compare(task(10, 1, 800), low) < 0);
+        //等效提交时间相同时仍按优先级
+        assertTrue(comparator.compare(task(10, 1, 900), low) < 0);
+        //不开启老化时高优先级总是在前
+        assertTrue(new PriorityComparator<>().compare(task(10, 1, 1000000), low) < 0);
+    }
+
+    @Test
+    public void executesSamePriorityInSubmitOrder() throws InterruptedException {
+        WorkStealingExecutor executor = newExecutor(1);
+        CountDownLatch gate = block(executor);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(200);
+        for (int i = 0; i < 200; i++) {
+            final int index = i;
+            //两个优先级交替提交, 各自内部应保持提交顺序
+            executor.execute(priorityTask(i % 2 == 0 ? 3 : 7, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    done.countDown();
+                }
+            }));
+        }
+        gate.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i < 200; i += 2) {
+            expected.add(i);
+        }
+        for (int i = 0; i < 200; i += 2) {
+            expected.add(i);
+        }
+        assertEquals(expected, order);
+    }
+
+    @Test
+    public void lowPriorityFinishesUnderHighPriorityLoad() throws InterruptedException {
+        //不开启老化时, 持续的高优先级任务让低优先级一直等待
+        assertFalse(runLowUnderLoad(0, 1000));
+        //每20毫秒提升一级, 最多等待约(10-1)*20毫秒加上之前排队的高优先级任务
+        assertTrue(runLowUnderLoad(20, 5000));
+    }
+
+    @Test
+    public void idleWorkerTakesHigherPriorityTaskFromBusyWorker() throws InterruptedException {
+        final WorkStealingExecutor executor = newExecutor(2);
+        final CountDownLatch highRan = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        //占住一个线程, 并在它自己的队列里放一个高优先级任务
+        executor.execute(priorityTask(5, new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(priorityTask(10, new Runnable() {
+                    @Override
+                    public void run() {
+                        highRan.countDown();
+                    }
+                }));
+                await(release);
+            }
+        }));
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread feeder = feed(executor, 1, stop);
+        try {
+            //另一个线程一直有低优先级任务可做, 也要先取走高优先级任务
+            assertTrue(highRan.await(2, TimeUnit.SECONDS));
+        } finally {
+            stop.set(true);
+            feeder.join();
+            release.countDown();
+        }
+    }
+
+    /***
+     * 单线程执行, 先提交一个低优先级任务, 再持续提交高优先级任务
+     *
+     * @return 低优先级任务是否在timeout毫秒内执行
+     */
+    private boolean runLowUnderLoad(long agingInterval, long timeout) throws InterruptedException {
+        WorkStealingExecutor executor = newExecutor(1);
+        executor.setAgingInterval(agingInterval, TimeUnit.MILLISECONDS);
+        CountDownLatch gate = block(executor);
+        final CountDownLatch lowRan = new CountDownLatch(1);
+        executor.execute(priorityTask(1, new Runnable() {
+            @Override
+            public void run() {
+                lowRan.countDown();
+            }
+        }));
+        //先排一批高优先级任务, 之后由feeder持续补充
+        for (int i = 0; i < 50; i++) {
+            executor.execute(priorityTask(10, new Runnable() {
+                @Override
+                public void run() {
+                    sleep(2);
+                }
+            }));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread feeder = feed(executor, 10, stop);
+        gate.countDown();
+        try {
+            return lowRan.await(timeout, TimeUnit.MILLISECONDS);
+        } finally {
+            stop.set(true);
+            feeder.join();
+        }
+    }
+
+    /***
+     * 提交速度快于执行速度, 队列里一直有priority的任务
+     */
+    private static Thread feed(final WorkStealingExecutor executor, final int priority, final AtomicBoolean stop) {
+        Thread feeder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!stop.get()) {
+                    executor.execute(priorityTask(priority, new Runnable() {
+                        @Override
+                        public void run() {
+                            sleep(2);
+                        }
+                    }));
+                    sleep(0);
+                }
+            }
+        });
+        feeder.setDaemon(true);
+        feeder.start();
+        return feeder;
+    }
+
+    /***
+     * 占住单线程执行器的线程, countDown后继续
+     */
+    private static CountDownLatch block(WorkStealingExecutor executor) throws InterruptedException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(priorityTask(Thread.MAX_PRIORITY, new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                await(gate);
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return gate;
+    }
+
+    private static WorkStealingExecutor newExecutor(int size) {
+        return new WorkStealingExecutor(size, size, 1, TimeUnit.SECONDS, Integer.MAX_VALUE, RejectionPolicy.ABORT, DAEMON_FACTORY);
+    }
+
+    private static PriorityRunnable task(int priority, long sequence, long submitTime) {
+        PriorityRunnable priorityRunnable = priorityTask(priority, null);
+        priorityRunnable.onSubmit(sequence, submitTime);
+        return priorityRunnable;
+    }
+
+    private static PriorityRunnable priorityTask(int priority, final Runnable runnable) {
+        PriorityRunnable priorityRunnable = new PriorityRunnable() {
+            @Override
+            public void run() {
+                runnable.run();
+            }
+        };
+        priorityRunnable.setPriority(priority);
+        return priorityRunnable;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(int millis) {
+        try {
+            if (millis == 0) {
+                Thread.sleep(0, 500000);
+            } else {
+                Thread.sleep(millis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.library.network;
+
+/**
+ * OkHttpClient配置, 每种配置只创建一次
+ * 所有配置共用同一个连接池、Dispatcher和拦截器, 只有超时时间不同
+ * Created by admin on 2016/12/14.
+ */
+public enum ClientProfile {
+
+    //普通接口请求
+    API(30, 30, 30),
+
+    //下载
+    DOWNLOAD(30, 600, 600),
+
+    //上传
+    UPLOAD(30, 600, 600);
+
+    //超时时间(秒)
+    final long connectTimeout;
+    final long readTimeout;
+    final long writeTimeout;
+
+    ClientProfile(long connectTimeout, long readTimeout, long writeTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.writeTimeout = writeTimeout;
+    }
+}
@@ -0,0 +1,40 @@
+package com.library.network;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * gzip压缩请求体, 需要服务器支持Content-Encoding: gzip
+ * Created by admin on 2016/12/16.
+ */
+class GzipRequestBody extends RequestBody {
+
+    private RequestBody mRequestBody;
+
+    public GzipRequestBody(RequestBody requestBody) {
+        this.mRequestBody = requestBody;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mRequestBody.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        //压缩后的长度未知
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+        mRequestBody.writeTo(gzipSink);
+        gzipSink.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.library.network;
+
+import com.library.network.interfaces.IHttpCallBack;
+import com.library.network.interfaces.IHttpCodeCallBack;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.interfaces.IHttpTypeCallBack;
+import com.library.network.utils.HttpCallBackUtils;
+
+/**
+ * 把IHttpCallBack包装成IHttpTypeCallBack<String>, String请求和带类型请求共用同一套流程
+ * Created by admin on 2016/12/2.
+ */
+class HttpCallBackWrapper implements IHttpTypeCallBack<String>, IHttpCodeCallBack {
+
+    private IHttpCallBack mIHttpCallBack;
+
+    private HttpCallBackWrapper(IHttpCallBack httpCallBack) {
+        this.mIHttpCallBack = httpCallBack;
+    }
+
+    static HttpCallBackWrapper wrap(IHttpCallBack httpCallBack) {
+        if (null == httpCallBack) {
+            return null;
+        }
+        return new HttpCallBackWrapper(httpCallBack);
+    }
+
+    @Override
+    public void onBefore(IHttpParams httpParams) {
+        mIHttpCallBack.onBefore(httpParams);
+    }
+
+    @Override
+    public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+        mIHttpCallBack.onProgress(httpParams, bytesRead, contentLength, finish);
+    }
+
+    @Override
+    public void onAfter(IHttpParams httpParams) {
+        mIHttpCallBack.onAfter(httpParams);
+    }
+
+    @Override
+    public void onFail(IHttpParams httpParams, String message) {
+        mIHttpCallBack.onFail(httpParams, message);
+    }
+
+    @Override
+    public void onFail(IHttpParams httpParams, int code, String message) {
+        HttpCallBackUtils.onFail(mIHttpCallBack, httpParams, code, message);
+    }
+
+    @Override
+    public void onSuccess(IHttpParams httpParams, String result) {
+        mIHttpCallBack.onSuccess(httpParams, result);
+    }
+}
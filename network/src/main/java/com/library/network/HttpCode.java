@@ -0,0 +1,26 @@
+package com.library.network;
+
+/**
+ * 请求失败时回调的错误码, 大于0时为Http状态码
+ * Created by admin on 2016/12/19.
+ */
+public class HttpCode {
+
+    //网络异常
+    public static final int IO_ERROR = -1;
+
+    //请求已取消
+    public static final int CANCEL = -2;
+
+    //服务器熔断中, 请求未发出
+    public static final int CIRCUIT_OPEN = -3;
+
+    //响应体解析失败
+    public static final int DECODE_ERROR = -4;
+
+    //网络不可用, 请求已保存到离线队列, 联网后重发
+    public static final int OFFLINE_QUEUED = -5;
+
+    //请求参数错误(如url为空或无效), 请求未发出
+    public static final int INVALID_PARAMS = -6;
+}
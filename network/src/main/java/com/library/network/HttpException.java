@@ -0,0 +1,28 @@
+package com.library.network;
+
+/**
+ * 请求失败, 错误码同onFail
+ * Created by admin on 2016/12/26.
+ */
+public class HttpException extends Exception {
+
+    private final int code;
+
+    public HttpException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    /***
+     * Http状态码, 小于0时见{@link HttpCode}
+     *
+     * @return
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isCanceled() {
+        return code == HttpCode.CANCEL;
+    }
+}
@@ -0,0 +1,35 @@
+package com.library.network;
+
+import com.library.network.interfaces.IHttpCodeCallBack;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.interfaces.IHttpTypeCallBack;
+
+/**
+ * 带错误码的IHttpTypeCallBack, 只需要实现onSuccess和onFail(IHttpParams, int, String)
+ * Created by admin on 2016/12/19.
+ */
+public abstract class HttpTypeCallBackAdapter<T> implements IHttpTypeCallBack<T>, IHttpCodeCallBack {
+
+    @Override
+    public void onBefore(IHttpParams httpParams) {
+
+    }
+
+    @Override
+    public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+
+    }
+
+    @Override
+    public void onAfter(IHttpParams httpParams) {
+
+    }
+
+    /***
+     * 没有错误码的失败按IO_ERROR处理
+     */
+    @Override
+    public void onFail(IHttpParams httpParams, String message) {
+        onFail(httpParams, HttpCode.IO_ERROR, message);
+    }
+}
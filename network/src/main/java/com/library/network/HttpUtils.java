@@ -4,19 +4,40 @@ import android.os.Handler;
 import android.os.Looper;
 import android.text.TextUtils;
 
+import com.library.network.cache.CacheStats;
+import com.library.network.cache.HttpCache;
+import com.library.network.decoder.ResponseDecoder;
+import com.library.network.decoder.StringDecoder;
+import com.library.network.download.DownloadListener;
+import com.library.network.download.DownloadTask;
+import com.library.network.future.HttpFuture;
+import com.library.network.interfaces.IHttpBaseCallBack;
 import com.library.network.interfaces.IHttpCallBack;
 import com.library.network.interfaces.IHttpParams;
+import com.library.network.interfaces.IHttpTypeCallBack;
+import com.library.network.metrics.NetworkMetrics;
+import com.library.network.metrics.TagHolder;
+import com.library.network.retry.CircuitBreaker;
+import com.library.network.retry.RetryPolicy;
+import com.library.network.retry.RetryScheduler;
+import com.library.network.upload.ChunkUploadListener;
+import com.library.network.upload.ChunkUploadTask;
 import com.library.network.utils.HttpFileUtils;
+import com.library.network.utils.HttpCallBackUtils;
+import com.library.network.utils.HttpUrlUtils;
 import com.library.utils.file.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.FormBody;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -24,6 +45,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * Created by admin on 2016/6/14.
@@ -38,48 +60,171 @@ public class HttpUtils {
         return HttpUtilsHolder.instance;
     }
 
-    private OkHttpClient mOkHttpClient = null;
-    private final long DEFAULT_TIME = 30;
-    private final long DEFAULT_DOWNLOAD_TIME = 600;
+    private volatile OkHttpClient mOkHttpClient = null;
+
+    private volatile Map<ClientProfile, OkHttpClient> mClients;
 
     private Handler mHandler;
 
+    private HttpCache mHttpCache;
+
+    private SingleFlight mSingleFlight;
+
+    //默认重试策略: 幂等请求最多重试2次
+    private volatile RetryPolicy mRetryPolicy = new RetryPolicy(2, 500, 10 * 1000);
+
+    private CircuitBreaker mCircuitBreaker;
+
+    private RetryScheduler mRetryScheduler;
+
+    private NetworkMetrics mNetworkMetrics;
+
+    private RequestScheduler mRequestScheduler;
+
     private HttpUtils() {
-        mOkHttpClient = new OkHttpClient.Builder()
-                .connectTimeout(DEFAULT_TIME, TimeUnit.SECONDS)
-                .readTimeout(DEFAULT_TIME, TimeUnit.SECONDS)
-                .writeTimeout(DEFAULT_TIME, TimeUnit.SECONDS).build();
+        mHttpCache = new HttpCache();
+        mSingleFlight = new SingleFlight();
+        mCircuitBreaker = new CircuitBreaker();
+        mRetryScheduler = new RetryScheduler();
+        mNetworkMetrics = new NetworkMetrics();
+        mRequestScheduler = new RequestScheduler();
+        //并发由RequestScheduler控制, Dispatcher只作为上限兜底
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(256);
+        dispatcher.setMaxRequestsPerHost(64);
+        buildClients(new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .dns(mNetworkMetrics.getDns())
+                .addInterceptor(mNetworkMetrics.getInterceptor())
+                .addInterceptor(mHttpCache.getStatsInterceptor())
+                .addNetworkInterceptor(mNetworkMetrics.getNetworkInterceptor())
+                .addNetworkInterceptor(mHttpCache.getMaxAgeInterceptor()).build());
 
         mHandler = new Handler(Looper.getMainLooper());
     }
 
     /***
-     * post  同步请求
+     * 开启磁盘缓存, 需要在请求前调用
+     *
+     * @param directory 缓存目录
+     * @param maxSize   缓存最大字节数
+     */
+    public void initCache(File directory, long maxSize) {
+        if (null == directory) {
+            throw new NullPointerException("directory is not null");
+        }
+        buildClients(mOkHttpClient.newBuilder()
+                .cache(new Cache(directory, maxSize))
+                .build());
+    }
+
+    /***
+     * 按配置创建OkHttpClient, newBuilder创建的Client共用连接池和Dispatcher
+     *
+     * @param baseClient
+     */
+    private void buildClients(OkHttpClient baseClient) {
+        Map<ClientProfile, OkHttpClient> clients = new EnumMap<>(ClientProfile.class);
+        for (ClientProfile clientProfile : ClientProfile.values()) {
+            clients.put(clientProfile, baseClient.newBuilder()
+                    .connectTimeout(clientProfile.connectTimeout, TimeUnit.SECONDS)
+                    .readTimeout(clientProfile.readTimeout, TimeUnit.SECONDS)
+                    .writeTimeout(clientProfile.writeTimeout, TimeUnit.SECONDS)
+                    .build());
+        }
+        mClients = clients;
+        mOkHttpClient = clients.get(ClientProfile.API);
+        //各配置共用连接池和Dispatcher, 统计一个即可
+        mNetworkMetrics.setOkHttpClient(mOkHttpClient);
+    }
+
+    /***
+     * 获取指定配置的OkHttpClient
+     *
+     * @param clientProfile
+     * @return
+     */
+    public OkHttpClient getClient(ClientProfile clientProfile) {
+        return mClients.get(clientProfile);
+    }
+
+    /***
+     * 设置默认重试策略, IHttpParams中设置的优先
+     *
+     * @param retryPolicy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = null == retryPolicy ? RetryPolicy.NONE : retryPolicy;
+    }
+
+    /***
+     * 按host熔断, 可修改熔断阈值和时间
+     *
+     * @return
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return mCircuitBreaker;
+    }
+
+    /***
+     * 异步请求的最大并发数, PRIORITY_USER_BLOCKING的请求不受限制
+     *
+     * @param maxRequests
+     */
+    public void setMaxRequests(int maxRequests) {
+        mRequestScheduler.setMaxRequests(maxRequests);
+    }
+
+    /***
+     * 异步请求单个host的最大并发数, PRIORITY_USER_BLOCKING的请求不受限制
+     *
+     * @param maxRequestsPerHost
+     */
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        mRequestScheduler.setMaxRequestsPerHost(maxRequestsPerHost);
+    }
+
+    /***
+     * 缓存命中统计
+     *
+     * @return
+     */
+    public CacheStats getCacheStats() {
+        return mHttpCache.getCacheStats();
+    }
+
+    /***
+     * 网络请求统计, 可设置MetricsSink输出
+     *
+     * @return
+     */
+    public NetworkMetrics getNetworkMetrics() {
+        return mNetworkMetrics;
+    }
+
+    /***
+     * post  同步请求, 响应体为空时回调onFail
      *
      * @param httpParams
      * @param httpCallBack
      * @return
      */
     public String post(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+        return post(httpParams, StringDecoder.getInstances(), HttpCallBackWrapper.wrap(httpCallBack));
+    }
+
+    /***
+     * post  同步请求, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @param httpCallBack
+     * @return
+     */
+    public <T> T post(final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack) {
         checkParams(httpParams);
-        sendOnBeforeCallBack(httpParams, httpCallBack);
-        Request request = createPostRequest(httpParams);
-        Response response = null;
-        String body = null;
-        String error = null;
-        try {
-            response = mOkHttpClient.newCall(request).execute();
-            body = response.body().string();
-        } catch (IOException e) {
-            error = e.getMessage();
-        }
-        if (null == response || TextUtils.isEmpty(body) || !response.isSuccessful()) {
-            sendFailCallBack(httpParams, httpCallBack, error);
-        } else {
-            sendSuccessCallBack(httpParams, httpCallBack, body);
-        }
-        sendOnAfterCallBack(httpParams, httpCallBack);
-        return body;
+        checkDecoder(decoder);
+        return execute(mOkHttpClient, createPostRequest(httpParams), httpParams, decoder, httpCallBack);
     }
 
     /***
@@ -89,35 +234,43 @@ public class HttpUtils {
      * @param httpCallBack
      */
     public void postAsync(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+        postAsync(httpParams, StringDecoder.getInstances(), HttpCallBackWrapper.wrap(httpCallBack));
+    }
+
+    /***
+     * post  异步请求, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @param httpCallBack
+     */
+    public <T> void postAsync(final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack) {
         checkParams(httpParams);
-        sendOnBeforeCallBack(httpParams, httpCallBack);
-        Request request = createPostRequest(httpParams);
-        mOkHttpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                if (call.isCanceled()) {
-                    sendFailCallBack(httpParams, httpCallBack, "request is cancel");
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                }
-                sendOnAfterCallBack(httpParams, httpCallBack);
-            }
+        checkDecoder(decoder);
+        enqueue(mOkHttpClient, createPostRequest(httpParams), httpParams, decoder, httpCallBack);
+    }
 
-            @Override
-            public void onResponse(Call call, Response response) {
-                if (response.isSuccessful()) {
-                    try {
-                        String body = response.body().string();
-                        sendSuccessCallBack(httpParams, httpCallBack, body);
-                    } catch (IOException e) {
-                        sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                    }
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, "");
-                }
-                sendOnAfterCallBack(httpParams, httpCallBack);
-            }
-        });
+    /***
+     * post  异步请求, 使用自定义的请求体, 忽略IHttpParams中的参数
+     *
+     * @param httpParams
+     * @param requestBody
+     * @param decoder
+     * @param httpCallBack
+     */
+    public <T> void postAsync(final IHttpParams httpParams, RequestBody requestBody, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack) {
+        checkParams(httpParams);
+        checkDecoder(decoder);
+        if (null == requestBody) {
+            throw new NullPointerException("requestBody is not null");
+        }
+        Request.Builder b = new Request.Builder();
+        b.url(httpParams.getHttpUrl());
+        if (null != httpParams.getTag()) {
+            b.tag(httpParams.getTag());
+        }
+        b.post(encodeBody(b, httpParams, requestBody));
+        enqueue(mOkHttpClient, b.build(), httpParams, decoder, httpCallBack);
     }
 
     /***
@@ -139,102 +292,404 @@ public class HttpUtils {
         if (null != httpParams.getTag()) {
             b.tag(httpParams.getTag());
         }
-        b.post(formBody);
+        b.post(encodeBody(b, httpParams, formBody));
         return b.build();
     }
 
     /***
-     * get  同步请求
+     * get  同步请求, 响应体为空时回调onFail
      *
      * @param httpParams
      * @param httpCallBack
      * @return
      */
     public String get(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+        return get(httpParams, StringDecoder.getInstances(), HttpCallBackWrapper.wrap(httpCallBack));
+    }
+
+    /***
+     * get  同步请求, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @param httpCallBack
+     * @return
+     */
+    public <T> T get(final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack) {
         checkParams(httpParams);
-        sendOnBeforeCallBack(httpParams, httpCallBack);
+        checkDecoder(decoder);
+        return execute(mOkHttpClient, createGetRequest(httpParams), httpParams, decoder, httpCallBack);
+    }
+
+    /***
+     * get  异步请求
+     *
+     * @param httpParams
+     * @param httpCallBack
+     */
+    public void getAsync(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+        getAsync(httpParams, StringDecoder.getInstances(), HttpCallBackWrapper.wrap(httpCallBack));
+    }
+
+    /***
+     * get  异步请求, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @param httpCallBack
+     */
+    public <T> void getAsync(final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack) {
+        checkParams(httpParams);
+        checkDecoder(decoder);
         Request request = createGetRequest(httpParams);
-        Response response = null;
-        String body = null;
-        String error = null;
-        try {
-            response = mOkHttpClient.newCall(request).execute();
-            body = response.body().string();
-        } catch (IOException e) {
-            error = e.getMessage();
+        sendOnBeforeCallBack(httpParams, httpCallBack);
+        //相同的请求正在执行时, 直接等待它的结果
+        SingleFlight.Flight<T> flight = mSingleFlight.join(createFlightKey(request, httpParams), decoder, httpParams, httpCallBack);
+        if (null == flight) {
+            return;
+        }
+        FlightCallBack<T> flightCallBack = new FlightCallBack<>(flight, httpParams);
+        enqueueCall(mOkHttpClient, request.newBuilder().tag(flight).build(), flightCallBack.mHttpParams, decoder, flightCallBack, 0);
+    }
+
+    /***
+     * 合并请求的key: method + url(含参数) + 缓存策略 + 优先级
+     * 优先级不同的请求不合并, 避免高优先级的调用方排在低优先级的请求后面
+     *
+     * @param request
+     * @param httpParams
+     * @return
+     */
+    private String createFlightKey(Request request, IHttpParams httpParams) {
+        return request.method() + " " + request.url() + " " + httpParams.getCachePolicy() + " " + httpParams.getCacheMaxAge() + " " + httpParams.getPriority();
+    }
+
+    /***
+     * get
+     *
+     * @param httpParams
+     * @return
+     */
+    private Request createGetRequest(IHttpParams httpParams) {
+        Request.Builder b = new Request.Builder();
+        b.url(HttpUrlUtils.buildUrl(httpParams.getHttpUrl(), httpParams.getParam()));
+        if (null != httpParams.getTag()) {
+            b.tag(httpParams.getTag());
+        }
+        mHttpCache.applyCachePolicy(b, httpParams);
+        return b.build();
+    }
+
+    /***
+     * 同步执行请求, 失败时按重试策略在当前线程等待后重试
+     *
+     * @param okHttpClient
+     * @param request
+     * @param httpParams
+     * @param decoder
+     * @param httpCallBack
+     * @return 解析结果, 失败返回null; 成功时也可能为null(如204或JSON的null), 以回调区分
+     */
+    private <T> T execute(OkHttpClient okHttpClient, Request request, IHttpParams httpParams, ResponseDecoder<T> decoder, IHttpTypeCallBack<T> httpCallBack) {
+        sendOnBeforeCallBack(httpParams, httpCallBack);
+        RetryPolicy retryPolicy = getRetryPolicy(httpParams);
+        String host = request.url().host();
+        T result = null;
+        boolean success = false;
+        int code;
+        String error;
+        int attempt = 0;
+        while (true) {
+            if (!mCircuitBreaker.allowRequest(host)) {
+                code = HttpCode.CIRCUIT_OPEN;
+                error = "circuit breaker is open: " + host;
+                break;
+            }
+            Call call = okHttpClient.newCall(request);
+            Response response;
+            try {
+                response = call.execute();
+                if (isCacheOnly(request, httpParams)) {
+                    if (mHttpCache.isUnsatisfiable(response)) {
+                        //没有缓存, 走网络
+                        response.body().close();
+                        call = okHttpClient.newCall(mHttpCache.createNetworkRequest(request));
+                        response = call.execute();
+                    } else {
+                        revalidate(okHttpClient, request, httpParams);
+                    }
+                }
+            } catch (IOException e) {
+                if (call.isCanceled()) {
+                    code = HttpCode.CANCEL;
+                    error = "request is cancel";
+                    break;
+                }
+                mCircuitBreaker.onFailure(host);
+                code = HttpCode.IO_ERROR;
+                error = e.getMessage();
+                if (retryPolicy.shouldRetry(request.method(), code, attempt) && sleep(retryPolicy.getDelay(attempt))) {
+                    attempt++;
+                    continue;
+                }
+                break;
+            }
+            recordResponse(host, response);
+            code = response.code();
+            if (response.isSuccessful()) {
+                try {
+                    result = decodeBody(response, decoder);
+                    success = true;
+                    error = null;
+                } catch (Exception e) {
+                    code = HttpCode.DECODE_ERROR;
+                    error = e.getMessage();
+                }
+                break;
+            }
+            response.body().close();
+            error = response.message();
+            if (retryPolicy.shouldRetry(request.method(), code, attempt) && sleep(retryPolicy.getDelay(attempt))) {
+                attempt++;
+                continue;
+            }
+            break;
+        }
+        if (success && decoder == StringDecoder.getInstances() && TextUtils.isEmpty((String) result)) {
+            //同步String请求沿用原来的规则, 空响应体按失败处理
+            success = false;
+            error = "response body is empty";
         }
-        if (null == response || TextUtils.isEmpty(body) || !response.isSuccessful()) {
-            sendFailCallBack(httpParams, httpCallBack, error);
+        if (!success) {
+            sendFailCallBack(httpParams, httpCallBack, code, error);
         } else {
-            sendSuccessCallBack(httpParams, httpCallBack, body);
+            sendSuccessCallBack(httpParams, httpCallBack, result);
         }
         sendOnAfterCallBack(httpParams, httpCallBack);
-        return body;
+        return result;
     }
 
     /***
-     * get  异步请求
+     * 异步执行请求
      *
+     * @param okHttpClient
+     * @param request
      * @param httpParams
+     * @param decoder
      * @param httpCallBack
      */
-    public void getAsync(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
-        checkParams(httpParams);
+    private <T> void enqueue(OkHttpClient okHttpClient, Request request, IHttpParams httpParams, ResponseDecoder<T> decoder, IHttpTypeCallBack<T> httpCallBack) {
         sendOnBeforeCallBack(httpParams, httpCallBack);
-        Request request = createGetRequest(httpParams);
-        mOkHttpClient.newCall(request).enqueue(new Callback() {
+        enqueueCall(okHttpClient, request, httpParams, decoder, httpCallBack, 0);
+    }
+
+    private <T> void enqueueCall(final OkHttpClient okHttpClient, final Request request, final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack, final int attempt) {
+        final String host = request.url().host();
+        if (!mCircuitBreaker.allowRequest(host)) {
+            //熔断中, 直接失败
+            sendFailCallBack(httpParams, httpCallBack, HttpCode.CIRCUIT_OPEN, "circuit breaker is open: " + host);
+            sendOnAfterCallBack(httpParams, httpCallBack);
+            return;
+        }
+        final RequestScheduler.Ticket ticket = new RequestScheduler.Ticket(host, httpParams.getPriority(), request.tag());
+        mRequestScheduler.schedule(ticket, new Runnable() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                if (call.isCanceled()) {
-                    sendFailCallBack(httpParams, httpCallBack, "request is cancel");
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, e.getMessage());
+            public void run() {
+                Call newCall = okHttpClient.newCall(request);
+                if (request.tag() instanceof SingleFlight.Flight) {
+                    mSingleFlight.setCall((SingleFlight.Flight<?>) request.tag(), newCall);
                 }
+                newCall.enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        mRequestScheduler.finish(ticket);
+                        if (call.isCanceled()) {
+                            sendFailCallBack(httpParams, httpCallBack, HttpCode.CANCEL, "request is cancel");
+                            sendOnAfterCallBack(httpParams, httpCallBack);
+                            return;
+                        }
+                        mCircuitBreaker.onFailure(host);
+                        if (retry(okHttpClient, call.request(), httpParams, decoder, httpCallBack, HttpCode.IO_ERROR, attempt)) {
+                            return;
+                        }
+                        sendFailCallBack(httpParams, httpCallBack, HttpCode.IO_ERROR, e.getMessage());
+                        sendOnAfterCallBack(httpParams, httpCallBack);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        try {
+                            handleResponse(okHttpClient, call, response, httpParams, decoder, httpCallBack, attempt);
+                        } finally {
+                            mRequestScheduler.finish(ticket);
+                        }
+                    }
+                });
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                sendFailCallBack(httpParams, httpCallBack, HttpCode.CANCEL, "request is cancel");
                 sendOnAfterCallBack(httpParams, httpCallBack);
             }
+        });
+    }
+
+    private <T> void handleResponse(OkHttpClient okHttpClient, Call call, Response response, IHttpParams httpParams, ResponseDecoder<T> decoder, IHttpTypeCallBack<T> httpCallBack, int attempt) {
+        String host = call.request().url().host();
+        if (isCacheOnly(call.request(), httpParams)) {
+            if (mHttpCache.isUnsatisfiable(response)) {
+                //没有缓存, 走网络
+                response.body().close();
+                enqueueCall(okHttpClient, mHttpCache.createNetworkRequest(call.request()), httpParams, decoder, httpCallBack, attempt);
+                return;
+            }
+            revalidate(okHttpClient, call.request(), httpParams);
+        }
+        recordResponse(host, response);
+        if (response.isSuccessful()) {
+            try {
+                T result = decodeBody(response, decoder);
+                sendSuccessCallBack(httpParams, httpCallBack, result);
+            } catch (Exception e) {
+                sendFailCallBack(httpParams, httpCallBack, HttpCode.DECODE_ERROR, e.getMessage());
+            }
+        } else {
+            response.body().close();
+            if (retry(okHttpClient, call.request(), httpParams, decoder, httpCallBack, response.code(), attempt)) {
+                return;
+            }
+            sendFailCallBack(httpParams, httpCallBack, response.code(), response.message());
+        }
+        sendOnAfterCallBack(httpParams, httpCallBack);
+    }
 
+    /***
+     * 按重试策略延迟重试
+     *
+     * @return 是否会重试
+     */
+    private <T> boolean retry(final OkHttpClient okHttpClient, final Request request, final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack, int code, final int attempt) {
+        RetryPolicy retryPolicy = getRetryPolicy(httpParams);
+        if (!retryPolicy.shouldRetry(request.method(), code, attempt)) {
+            return false;
+        }
+        mRetryScheduler.schedule(request.tag(), retryPolicy.getDelay(attempt), new Runnable() {
             @Override
-            public void onResponse(Call call, Response response) {
-                if (response.isSuccessful()) {
-                    try {
-                        String body = response.body().string();
-                        sendSuccessCallBack(httpParams, httpCallBack, body);
-                    } catch (IOException e) {
-                        sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                    }
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, "");
-                }
+            public void run() {
+                enqueueCall(okHttpClient, request, httpParams, decoder, httpCallBack, attempt + 1);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                sendFailCallBack(httpParams, httpCallBack, HttpCode.CANCEL, "request is cancel");
                 sendOnAfterCallBack(httpParams, httpCallBack);
             }
         });
+        return true;
     }
 
     /***
-     * get
+     * 记录服务器状态, 5xx算作失败; 直接从缓存返回的不算
+     *
+     * @param host
+     * @param response
+     */
+    private void recordResponse(String host, Response response) {
+        if (null == response.networkResponse()) {
+            return;
+        }
+        if (response.code() >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            mCircuitBreaker.onFailure(host);
+        } else {
+            mCircuitBreaker.onSuccess(host);
+        }
+    }
+
+    private RetryPolicy getRetryPolicy(IHttpParams httpParams) {
+        return null == httpParams.getRetryPolicy() ? mRetryPolicy : httpParams.getRetryPolicy();
+    }
+
+    private boolean sleep(long time) {
+        try {
+            Thread.sleep(time);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /***
+     * 用decoder直接从响应流中解析, 解析完成后关闭响应体
+     *
+     * @param response
+     * @param decoder
+     * @return
+     * @throws IOException
+     */
+    private <T> T decodeBody(Response response, ResponseDecoder<T> decoder) throws IOException {
+        ResponseBody responseBody = response.body();
+        try {
+            return decoder.decode(responseBody.source(), responseBody.contentType());
+        } finally {
+            responseBody.close();
+        }
+    }
+
+    /***
+     * 后台刷新缓存, 按预加载优先级排队, 同样受熔断和并发数限制
+     *
+     * @param okHttpClient
+     * @param request      只读缓存的请求
+     * @param httpParams
+     */
+    private void revalidate(OkHttpClient okHttpClient, Request request, IHttpParams httpParams) {
+        IHttpParams revalidateParams = new IHttpParams() {
+        };
+        revalidateParams.setHttpUrl(httpParams.getHttpUrl());
+        revalidateParams.setTag(httpParams.getTag());
+        revalidateParams.setRetryPolicy(httpParams.getRetryPolicy());
+        revalidateParams.setPriority(IHttpParams.PRIORITY_PREFETCH);
+        revalidateParams.setAsyncBack(true);
+        //不沿用原请求的tag(可能是合并请求的Flight), 用调用方的tag, 可以一起取消
+        Request revalidateRequest = mHttpCache.createNetworkRequest(request).newBuilder()
+                .tag(httpParams.getTag())
+                .build();
+        enqueueCall(okHttpClient, revalidateRequest, revalidateParams, mHttpCache.getRevalidateDecoder(), null, 0);
+    }
+
+    /***
+     * 是否是先读缓存再后台刷新的请求
      *
+     * @param request
      * @param httpParams
      * @return
      */
-    private Request createGetRequest(IHttpParams httpParams) {
-        StringBuffer stringBuffer = new StringBuffer(httpParams.getHttpUrl());
-        if (null != httpParams.getParam() && httpParams.getParam().size() > 0) {
-            for (Map.Entry<String, Object> map : httpParams.getParam().entrySet()) {
-                int index = stringBuffer.indexOf("?");
-                if (index > -1) {
-                    stringBuffer.append("&");
-                } else {
-                    stringBuffer.append("?");
-                }
-                stringBuffer.append(map.getKey()).append("=").append(map.getValue().toString());
-            }
+    private boolean isCacheOnly(Request request, IHttpParams httpParams) {
+        return mHttpCache.isStaleWhileRevalidate(httpParams) && request.cacheControl().onlyIfCached();
+    }
+
+    /***
+     * 按参数压缩请求体
+     *
+     * @param builder
+     * @param httpParams
+     * @param requestBody
+     * @return
+     */
+    private RequestBody encodeBody(Request.Builder builder, IHttpParams httpParams, RequestBody requestBody) {
+        if (!httpParams.isGzipRequest()) {
+            return requestBody;
         }
-        Request.Builder b = new Request.Builder();
-        b.url(stringBuffer.toString());
-        if (null != httpParams.getTag()) {
-            b.tag(httpParams.getTag());
+        builder.header("Content-Encoding", "gzip");
+        return new GzipRequestBody(requestBody);
+    }
+
+    private void checkDecoder(ResponseDecoder decoder) {
+        if (null == decoder) {
+            throw new NullPointerException("decoder is not null");
         }
-        return b.build();
     }
 
     /***
@@ -258,8 +713,8 @@ public class HttpUtils {
      * @param httpParams
      * @param httpCallBack
      */
-    private void sendOnBeforeCallBack(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
-        if (null != httpCallBack) {
+    private void sendOnBeforeCallBack(final IHttpParams httpParams, final IHttpBaseCallBack httpCallBack) {
+        if (null != httpCallBack && !(httpCallBack instanceof FutureCallBack)) {
             mHandler.post(new Runnable() {
                 @Override
                 public void run() {
@@ -275,8 +730,8 @@ public class HttpUtils {
      * @param httpParams
      * @param httpCallBack
      */
-    private void sendOnAfterCallBack(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
-        if (null != httpCallBack) {
+    private void sendOnAfterCallBack(final IHttpParams httpParams, final IHttpBaseCallBack httpCallBack) {
+        if (null != httpCallBack && !(httpCallBack instanceof FutureCallBack)) {
             mHandler.post(new Runnable() {
                 @Override
                 public void run() {
@@ -291,18 +746,19 @@ public class HttpUtils {
      *
      * @param httpParams
      * @param httpCallBack
+     * @param code         Http状态码或HttpCode中的错误码
      * @param message
      */
-    private void sendFailCallBack(final IHttpParams httpParams, final IHttpCallBack httpCallBack, final String message) {
+    private void sendFailCallBack(final IHttpParams httpParams, final IHttpBaseCallBack httpCallBack, final int code, final String message) {
         if (null != httpCallBack) {
-            if (httpParams.isAsyncBack()) {
-                httpCallBack.onFail(httpParams, message);
+            if (httpParams.isAsyncBack() || httpCallBack instanceof FutureCallBack) {
+                HttpCallBackUtils.onFail(httpCallBack, httpParams, code, message);
                 return;
             }
             mHandler.post(new Runnable() {
                 @Override
                 public void run() {
-                    httpCallBack.onFail(httpParams, message);
+                    HttpCallBackUtils.onFail(httpCallBack, httpParams, code, message);
                 }
             });
         }
@@ -315,9 +771,9 @@ public class HttpUtils {
      * @param httpCallBack
      * @param body
      */
-    private void sendSuccessCallBack(final IHttpParams httpParams, final IHttpCallBack httpCallBack, final String body) {
+    private <T> void sendSuccessCallBack(final IHttpParams httpParams, final IHttpTypeCallBack<T> httpCallBack, final T body) {
         if (null != httpCallBack) {
-            if (httpParams.isAsyncBack()) {
+            if (httpParams.isAsyncBack() || httpCallBack instanceof FutureCallBack) {
                 httpCallBack.onSuccess(httpParams, body);
                 return;
             }
@@ -331,55 +787,111 @@ public class HttpUtils {
     }
 
 
+    /************************************************************************************
+     * HttpFuture(start)
+     ************************************************************************************/
+    /***
+     * get  返回HttpFuture, 在请求线程完成, 不经过主线程
+     * 取消HttpFuture会取消请求; 不与相同的getAsync请求合并, 也不能用cancel(tag)取消
+     *
+     * @param httpParams
+     * @return
+     */
+    public HttpFuture<String> getFuture(IHttpParams httpParams) {
+        return getFuture(httpParams, StringDecoder.getInstances());
+    }
+
+    /***
+     * get  返回HttpFuture, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @return
+     */
+    public <T> HttpFuture<T> getFuture(IHttpParams httpParams, ResponseDecoder<T> decoder) {
+        checkParams(httpParams);
+        checkDecoder(decoder);
+        return enqueueFuture(mOkHttpClient, createGetRequest(httpParams), httpParams, decoder);
+    }
+
+    /***
+     * post  返回HttpFuture, 在请求线程完成, 不经过主线程
+     *
+     * @param httpParams
+     * @return
+     */
+    public HttpFuture<String> postFuture(IHttpParams httpParams) {
+        return postFuture(httpParams, StringDecoder.getInstances());
+    }
+
+    /***
+     * post  返回HttpFuture, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @return
+     */
+    public <T> HttpFuture<T> postFuture(IHttpParams httpParams, ResponseDecoder<T> decoder) {
+        checkParams(httpParams);
+        checkDecoder(decoder);
+        return enqueueFuture(mOkHttpClient, createPostRequest(httpParams), httpParams, decoder);
+    }
+
+    private <T> HttpFuture<T> enqueueFuture(OkHttpClient okHttpClient, Request request, IHttpParams httpParams, ResponseDecoder<T> decoder) {
+        final HttpFuture<T> future = new HttpFuture<>();
+        //每个HttpFuture使用单独的tag, 取消时只取消自己的请求; 统计时使用调用方的tag
+        final Object futureTag = new TagHolder(httpParams.getTag());
+        future.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                cancel(futureTag);
+            }
+        });
+        enqueueCall(okHttpClient, request.newBuilder().tag(futureTag).build(), httpParams, decoder, new FutureCallBack<>(future), 0);
+        return future;
+    }
+
+    /************************************************************************************
+     * HttpFuture(end)
+     ************************************************************************************/
+
     /************************************************************************************
      * 下载(start)
      ************************************************************************************/
-    public void download(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+    /***
+     * 下载, 中断后再次下载同一个文件会从上次的位置继续
+     *
+     * @param httpParams
+     * @param callBack
+     * @return 下载任务, 可用于暂停(cancel), 已经start, 继续下载时再调用download
+     */
+    public DownloadTask download(final IHttpParams httpParams, final IHttpCallBack callBack) {
         checkParams(httpParams);
+        final IHttpTypeCallBack<String> httpCallBack = HttpCallBackWrapper.wrap(callBack);
         checkSaveFile(httpParams);
-        Request.Builder builder = new Request.Builder();
-        builder.url(httpParams.getHttpUrl());
-        if (null != httpParams.getTag()) {
-            builder.tag(httpParams.getTag());
-        }
-        Request request = builder.build();
-        OkHttpClient okHttpClient = mOkHttpClient.newBuilder()
-                .readTimeout(DEFAULT_DOWNLOAD_TIME, TimeUnit.SECONDS)
-                .writeTimeout(DEFAULT_DOWNLOAD_TIME, TimeUnit.SECONDS)
-                .addInterceptor(new ResponseInterceptor(httpParams, httpCallBack)).build();
+        OkHttpClient okHttpClient = getClient(ClientProfile.DOWNLOAD);
         sendOnBeforeCallBack(httpParams, httpCallBack);
-        okHttpClient.newCall(request).enqueue(new Callback() {
+        final ProgressListener progressListener = new ProgressListener(httpParams, httpCallBack);
+        DownloadTask downloadTask = new DownloadTask(okHttpClient, httpParams, new DownloadListener() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                if (call.isCanceled()) {
-                    sendFailCallBack(httpParams, httpCallBack, "request is cancel");
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                }
+            public void onProgress(long bytesRead, long contentLength, boolean finish) {
+                progressListener.onProgress(bytesRead, contentLength, finish);
+            }
+
+            @Override
+            public void onSuccess(File file) {
+                sendSuccessCallBack(httpParams, httpCallBack, file.getAbsolutePath());
                 sendOnAfterCallBack(httpParams, httpCallBack);
             }
 
             @Override
-            public void onResponse(Call call, Response response) {
-                if (response.isSuccessful()) {
-                    InputStream is = null;
-                    try {
-                        //获取返回体（流的形式）
-                        is = response.body().byteStream();
-                        FileUtils.saveFile(is, httpParams.getSaveFilePath(), httpParams.getSaveFileName());
-                        String filePath = new File(httpParams.getSaveFilePath(), httpParams.getSaveFileName()).getAbsolutePath();
-                        sendSuccessCallBack(httpParams, httpCallBack, filePath);
-                    } catch (Exception e) {
-                        sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                    } finally {
-                        HttpFileUtils.closeInputStream(is);
-                    }
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, "");
-                }
+            public void onFail(int code, String message) {
+                sendFailCallBack(httpParams, httpCallBack, code, message);
                 sendOnAfterCallBack(httpParams, httpCallBack);
             }
         });
+        downloadTask.start();
+        return downloadTask;
     }
 
     public void checkSaveFile(IHttpParams httpParams) {
@@ -401,42 +913,24 @@ public class HttpUtils {
      ***********************************************************************************/
 
     public void upload(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+        upload(httpParams, StringDecoder.getInstances(), HttpCallBackWrapper.wrap(httpCallBack));
+    }
+
+    /***
+     * 上传, 响应体由decoder直接解析
+     *
+     * @param httpParams
+     * @param decoder
+     * @param httpCallBack
+     */
+    public <T> void upload(final IHttpParams httpParams, final ResponseDecoder<T> decoder, final IHttpTypeCallBack<T> httpCallBack) {
         checkParams(httpParams);
+        checkDecoder(decoder);
         Request request = createUploadRequest(httpParams, httpCallBack);
-        OkHttpClient okHttpClient = mOkHttpClient.newBuilder()
-                .writeTimeout(DEFAULT_DOWNLOAD_TIME, TimeUnit.SECONDS)
-                .readTimeout(DEFAULT_DOWNLOAD_TIME, TimeUnit.SECONDS)
-                .build();
-        sendOnBeforeCallBack(httpParams, httpCallBack);
-        okHttpClient.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                if (call.isCanceled()) {
-                    sendFailCallBack(httpParams, httpCallBack, "request is cancel");
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                }
-                sendOnAfterCallBack(httpParams, httpCallBack);
-            }
-
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (response.isSuccessful()) {
-                    try {
-                        String body = response.body().string();
-                        sendSuccessCallBack(httpParams, httpCallBack, body);
-                    } catch (IOException e) {
-                        sendFailCallBack(httpParams, httpCallBack, e.getMessage());
-                    }
-                } else {
-                    sendFailCallBack(httpParams, httpCallBack, "");
-                }
-                sendOnAfterCallBack(httpParams, httpCallBack);
-            }
-        });
+        enqueue(getClient(ClientProfile.UPLOAD), request, httpParams, decoder, httpCallBack);
     }
 
-    private Request createUploadRequest(IHttpParams httpParams, IHttpCallBack httpCallBack) {
+    private Request createUploadRequest(IHttpParams httpParams, IHttpBaseCallBack httpCallBack) {
         MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
         if (null != httpParams.getParam() && httpParams.getParam().size() > 0) {
             File file = null;
@@ -464,10 +958,44 @@ public class HttpUtils {
         if (null != httpParams.getTag()) {
             b.tag(httpParams.getTag());
         }
-        b.post(new ProgressRequestBody(requestBody, new ProgressListener(httpParams, httpCallBack)));
+        b.post(encodeBody(b, httpParams, new ProgressRequestBody(requestBody, new ProgressListener(httpParams, httpCallBack))));
         return b.build();
     }
 
+    /***
+     * 分片上传, 每个文件按IHttpParams.uploadChunkSize分片, 每片失败时单独重试
+     *
+     * @param httpParams
+     * @param callBack
+     * @return 上传任务, 失败后可调用start从未完成的分片继续
+     */
+    public ChunkUploadTask uploadChunked(final IHttpParams httpParams, final IHttpCallBack callBack) {
+        checkParams(httpParams);
+        final IHttpTypeCallBack<String> httpCallBack = HttpCallBackWrapper.wrap(callBack);
+        sendOnBeforeCallBack(httpParams, httpCallBack);
+        final ProgressListener progressListener = new ProgressListener(httpParams, httpCallBack);
+        ChunkUploadTask chunkUploadTask = new ChunkUploadTask(getClient(ClientProfile.UPLOAD), httpParams, new ChunkUploadListener() {
+            @Override
+            public void onProgress(long bytesWritten, long contentLength, boolean finish) {
+                progressListener.onProgress(bytesWritten, contentLength, finish);
+            }
+
+            @Override
+            public void onSuccess(String body) {
+                sendSuccessCallBack(httpParams, httpCallBack, body);
+                sendOnAfterCallBack(httpParams, httpCallBack);
+            }
+
+            @Override
+            public void onFail(int code, String message) {
+                sendFailCallBack(httpParams, httpCallBack, code, message);
+                sendOnAfterCallBack(httpParams, httpCallBack);
+            }
+        });
+        chunkUploadTask.start();
+        return chunkUploadTask;
+    }
+
     /************************************************************************************
      * 上传(end)
      ***********************************************************************************/
@@ -481,6 +1009,15 @@ public class HttpUtils {
         if (null == tag) {
             return;
         }
+        //合并的请求只移除当前调用方, 其他调用方还在等待时不取消请求
+        for (SingleFlight.Waiter<?> waiter : mSingleFlight.cancel(tag)) {
+            sendFailCallBack(waiter.mHttpParams, waiter.mHttpCallBack, HttpCode.CANCEL, "request is cancel");
+            sendOnAfterCallBack(waiter.mHttpParams, waiter.mHttpCallBack);
+        }
+        //等待重试的请求
+        mRetryScheduler.cancel(tag);
+        //排队中的请求
+        mRequestScheduler.cancel(tag);
         for (Call call : mOkHttpClient.dispatcher().queuedCalls()) {
             if (null == call || !call.request().tag().equals(tag)) {
                 continue;
@@ -494,4 +1031,97 @@ public class HttpUtils {
             call.cancel();
         }
     }
+
+    /***
+     * 合并请求的回调, 把结果分发给所有调用方
+     */
+    private class FlightCallBack<T> extends HttpTypeCallBackAdapter<T> {
+
+        private SingleFlight.Flight<T> mFlight;
+        //请求在子线程回调, 由各调用方的参数决定回调线程
+        private IHttpParams mHttpParams = new IHttpParams() {
+        };
+
+        FlightCallBack(SingleFlight.Flight<T> flight, IHttpParams httpParams) {
+            this.mFlight = flight;
+            mHttpParams.setAsyncBack(true);
+            mHttpParams.setHandler(mHandler);
+            mHttpParams.setCachePolicy(httpParams.getCachePolicy());
+            mHttpParams.setCacheMaxAge(httpParams.getCacheMaxAge());
+            mHttpParams.setPriority(httpParams.getPriority());
+            mHttpParams.setRetryPolicy(httpParams.getRetryPolicy());
+        }
+
+        @Override
+        public void onBefore(IHttpParams httpParams) {
+
+        }
+
+        @Override
+        public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+
+        }
+
+        @Override
+        public void onAfter(IHttpParams httpParams) {
+            for (SingleFlight.Waiter<T> waiter : mSingleFlight.complete(mFlight)) {
+                sendOnAfterCallBack(waiter.mHttpParams, waiter.mHttpCallBack);
+            }
+        }
+
+        @Override
+        public void onFail(IHttpParams httpParams, int code, String message) {
+            for (SingleFlight.Waiter<T> waiter : mSingleFlight.complete(mFlight)) {
+                sendFailCallBack(waiter.mHttpParams, waiter.mHttpCallBack, code, message);
+            }
+        }
+
+        @Override
+        public void onSuccess(IHttpParams httpParams, T result) {
+            for (SingleFlight.Waiter<T> waiter : mSingleFlight.complete(mFlight)) {
+                sendSuccessCallBack(waiter.mHttpParams, waiter.mHttpCallBack, result);
+            }
+        }
+    }
+
+    /***
+     * HttpFuture的回调, 在请求线程直接完成, 不回调onBefore和onAfter
+     */
+    private static class FutureCallBack<T> extends HttpTypeCallBackAdapter<T> {
+
+        private HttpFuture<T> mFuture;
+
+        FutureCallBack(HttpFuture<T> future) {
+            this.mFuture = future;
+        }
+
+        @Override
+        public void onBefore(IHttpParams httpParams) {
+
+        }
+
+        @Override
+        public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+
+        }
+
+        @Override
+        public void onAfter(IHttpParams httpParams) {
+
+        }
+
+        @Override
+        public void onFail(IHttpParams httpParams, int code, String message) {
+            if (code == HttpCode.CANCEL) {
+                mFuture.cancel(false);
+                return;
+            }
+            mFuture.setException(new HttpException(code, message));
+        }
+
+        @Override
+        public void onSuccess(IHttpParams httpParams, T result) {
+            mFuture.set(result);
+        }
+    }
 }
@@ -1,29 +1,93 @@
 package com.library.network;
 
-import com.library.network.interfaces.IHttpCallBack;
+import android.os.SystemClock;
+
+import com.library.network.interfaces.IHttpBaseCallBack;
 import com.library.network.interfaces.IHttpParams;
 
 /**
+ * 进度回调
+ * 1.同一个请求最多只有一条待处理的消息, 消息未处理时只更新进度值
+ * 2.按时间间隔和百分比步长限制回调频率(IHttpParams中设置)
+ * 3.完成(finish=true)的进度一定会回调
  * Created by admin on 2016/6/23.
  */
 class ProgressListener {
 
     private IHttpParams mIHttpParams;
-    private IHttpCallBack mIHttpCallBack;
+    private IHttpBaseCallBack mIHttpCallBack;
+
+    //以下字段都在synchronized中访问
+    private long mBytesRead;
+    private long mContentLength;
+    private boolean mFinish;
+    private boolean mPending;
+    private long mLastTime;
+    private int mLastPercent = -1;
 
-    public ProgressListener(IHttpParams httpParams, IHttpCallBack httpCallBack) {
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long bytesRead;
+            long contentLength;
+            boolean finish;
+            synchronized (ProgressListener.this) {
+                bytesRead = mBytesRead;
+                contentLength = mContentLength;
+                finish = mFinish;
+                mPending = false;
+            }
+            mIHttpCallBack.onProgress(mIHttpParams, bytesRead, contentLength, finish);
+        }
+    };
+
+    public ProgressListener(IHttpParams httpParams, IHttpBaseCallBack httpCallBack) {
         this.mIHttpParams = httpParams;
         this.mIHttpCallBack = httpCallBack;
     }
 
     public void onProgress(final long bytesRead, final long contentLength, final boolean finish) {
-        if (null != mIHttpCallBack) {
-            mIHttpParams.getHandler().post(new Runnable() {
-                @Override
-                public void run() {
-                    mIHttpCallBack.onProgress(mIHttpParams, bytesRead, contentLength, finish);
-                }
-            });
+        if (null == mIHttpCallBack) {
+            return;
+        }
+        synchronized (this) {
+            if (mFinish) {
+                return;
+            }
+            if (!finish && !isDue(bytesRead, contentLength)) {
+                return;
+            }
+            mBytesRead = bytesRead;
+            mContentLength = contentLength;
+            mFinish = finish;
+            if (mPending) {
+                return;
+            }
+            mPending = true;
+        }
+        mIHttpParams.getHandler().post(mDispatchRunnable);
+    }
+
+    /***
+     * 是否达到回调的时间间隔和百分比步长
+     *
+     * @param bytesRead
+     * @param contentLength
+     * @return
+     */
+    private boolean isDue(long bytesRead, long contentLength) {
+        long now = SystemClock.uptimeMillis();
+        if (now - mLastTime < mIHttpParams.getProgressInterval()) {
+            return false;
+        }
+        if (contentLength > 0) {
+            int percent = (int) (bytesRead * 100 / contentLength);
+            if (percent - mLastPercent < mIHttpParams.getProgressStep()) {
+                return false;
+            }
+            mLastPercent = percent;
         }
+        mLastTime = now;
+        return true;
     }
 }
@@ -1,63 +0,0 @@
-package com.library.network;
-
-import java.io.IOException;
-
-import okhttp3.MediaType;
-import okhttp3.ResponseBody;
-import okio.Buffer;
-import okio.BufferedSource;
-import okio.ForwardingSource;
-import okio.Okio;
-import okio.Source;
-
-/**
- * Created by admin on 2016/6/23.
- */
-class ProgressResponseBody extends ResponseBody {
-
-    private ResponseBody mResponseBody;
-    private ProgressListener mProgressListener;
-
-    private BufferedSource mBufferedSource;
-
-    public ProgressResponseBody(ResponseBody responseBody, ProgressListener progressListener) {
-        this.mResponseBody = responseBody;
-        this.mProgressListener = progressListener;
-    }
-
-    @Override
-    public MediaType contentType() {
-        return mResponseBody.contentType();
-    }
-
-    @Override
-    public long contentLength() {
-        return mResponseBody.contentLength();
-    }
-
-    @Override
-    public BufferedSource source() {
-        if (null == mBufferedSource) {
-            mBufferedSource = Okio.buffer(source(mResponseBody.source()));
-        }
-        return mBufferedSource;
-    }
-
-    private Source source(Source source) {
-
-        return new ForwardingSource(source) {
-            //当前读取字节数
-            long totalBytesRead = 0L;
-
-            @Override
-            public long read(Buffer sink, long byteCount) throws IOException {
-                long bytesRead = super.read(sink, byteCount);
-                totalBytesRead += bytesRead != -1 ? bytesRead : 0;
-                if (null != mProgressListener) {
-                    mProgressListener.onProgress(totalBytesRead, contentLength(), bytesRead == -1);
-                }
-                return bytesRead;
-            }
-        };
-    }
-}
@@ -0,0 +1,179 @@
+package com.library.network;
+
+import com.library.network.interfaces.IHttpParams;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 异步请求调度, 在OkHttp的Dispatcher之前按优先级排队
+ * 限制总并发数和单个host的并发数, 优先级相同时先进先出
+ * PRIORITY_USER_BLOCKING的请求不排队, 直接执行
+ * Created by admin on 2016/12/22.
+ */
+class RequestScheduler {
+
+    private int mMaxRequests = 64;
+
+    private int mMaxRequestsPerHost = 5;
+
+    private int mRunningCount;
+
+    private long mSequence;
+
+    private final Map<String, Integer> mRunningPerHost = new HashMap<>();
+
+    private final TreeSet<Ticket> mReadyTickets = new TreeSet<>(new Comparator<Ticket>() {
+        @Override
+        public int compare(Ticket lhs, Ticket rhs) {
+            if (lhs.priority != rhs.priority) {
+                return lhs.priority > rhs.priority ? -1 : 1;
+            }
+            return lhs.sequence < rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+        }
+    });
+
+    /***
+     * 排队执行
+     *
+     * @param ticket
+     * @param start    轮到时执行, 请求结束后必须调用finish(ticket)
+     * @param onCancel 排队期间被取消时调用
+     */
+    void schedule(Ticket ticket, Runnable start, Runnable onCancel) {
+        ticket.start = start;
+        ticket.onCancel = onCancel;
+        boolean runNow;
+        synchronized (this) {
+            ticket.sequence = mSequence++;
+            runNow = ticket.priority >= IHttpParams.PRIORITY_USER_BLOCKING;
+            if (runNow) {
+                markRunning(ticket);
+            } else {
+                mReadyTickets.add(ticket);
+            }
+        }
+        if (runNow) {
+            start.run();
+        } else {
+            promote();
+        }
+    }
+
+    /***
+     * 请求结束, 释放并发数
+     *
+     * @param ticket
+     */
+    void finish(Ticket ticket) {
+        synchronized (this) {
+            if (!ticket.running) {
+                return;
+            }
+            ticket.running = false;
+            mRunningCount--;
+            Integer count = mRunningPerHost.get(ticket.host);
+            if (null == count || count <= 1) {
+                mRunningPerHost.remove(ticket.host);
+            } else {
+                mRunningPerHost.put(ticket.host, count - 1);
+            }
+        }
+        promote();
+    }
+
+    /***
+     * 取消排队中的请求
+     *
+     * @param tag
+     */
+    void cancel(Object tag) {
+        List<Ticket> canceled = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Ticket> iterator = mReadyTickets.iterator();
+            while (iterator.hasNext()) {
+                Ticket ticket = iterator.next();
+                if (tag.equals(ticket.tag)) {
+                    iterator.remove();
+                    canceled.add(ticket);
+                }
+            }
+        }
+        for (Ticket ticket : canceled) {
+            ticket.onCancel.run();
+        }
+    }
+
+    void setMaxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("max < 1: " + maxRequests);
+        }
+        synchronized (this) {
+            mMaxRequests = maxRequests;
+        }
+        promote();
+    }
+
+    void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("max < 1: " + maxRequestsPerHost);
+        }
+        synchronized (this) {
+            mMaxRequestsPerHost = maxRequestsPerHost;
+        }
+        promote();
+    }
+
+    /***
+     * 按优先级取出可以执行的请求, 在锁外执行
+     */
+    private void promote() {
+        List<Ticket> ready = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Ticket> iterator = mReadyTickets.iterator();
+            while (iterator.hasNext() && mRunningCount < mMaxRequests) {
+                Ticket ticket = iterator.next();
+                Integer count = mRunningPerHost.get(ticket.host);
+                if (null != count && count >= mMaxRequestsPerHost) {
+                    //该host已满, 不影响其他host的请求
+                    continue;
+                }
+                iterator.remove();
+                markRunning(ticket);
+                ready.add(ticket);
+            }
+        }
+        for (Ticket ticket : ready) {
+            ticket.start.run();
+        }
+    }
+
+    private void markRunning(Ticket ticket) {
+        ticket.running = true;
+        mRunningCount++;
+        Integer count = mRunningPerHost.get(ticket.host);
+        mRunningPerHost.put(ticket.host, null == count ? 1 : count + 1);
+    }
+
+    static class Ticket {
+
+        final String host;
+        final int priority;
+        final Object tag;
+        Runnable start;
+        Runnable onCancel;
+        long sequence;
+        boolean running;
+
+        Ticket(String host, int priority, Object tag) {
+            this.host = host;
+            this.priority = priority;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.library.network;
+
+import com.library.network.decoder.ResponseDecoder;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.interfaces.IHttpTypeCallBack;
+import com.library.network.metrics.TagHolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+
+/**
+ * 相同请求合并
+ * 同时发起的相同GET请求(method + url + 参数 + 解析器)只执行一次, 结果分发给所有调用方
+ * Created by admin on 2016/12/7.
+ */
+class SingleFlight {
+
+    private final Map<String, Flight<?>> mFlights = new HashMap<>();
+
+    /***
+     * 加入请求
+     *
+     * @param key          请求唯一标识
+     * @param decoder
+     * @param httpParams
+     * @param httpCallBack
+     * @return 需要发起请求时返回新的Flight, 已有相同请求在执行时返回null
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> Flight<T> join(String key, ResponseDecoder<T> decoder, IHttpParams httpParams, IHttpTypeCallBack<T> httpCallBack) {
+        Flight<?> flight = mFlights.get(key);
+        if (null != flight && flight.mDecoder == decoder) {
+            ((Flight<T>) flight).mWaiters.add(new Waiter<>(httpParams, httpCallBack));
+            return null;
+        }
+        Flight<T> newFlight = new Flight<>(key, decoder, httpParams.getTag());
+        newFlight.mWaiters.add(new Waiter<>(httpParams, httpCallBack));
+        if (null == flight) {
+            mFlights.put(key, newFlight);
+        }
+        return newFlight;
+    }
+
+    /***
+     * 关联实际执行的Call, 所有调用方都已取消时直接取消
+     *
+     * @param flight
+     * @param call
+     */
+    synchronized void setCall(Flight<?> flight, Call call) {
+        flight.mCall = call;
+        if (flight.mWaiters.isEmpty()) {
+            call.cancel();
+        }
+    }
+
+    /***
+     * 请求结束, 移除Flight, 之后的相同请求会重新发起
+     *
+     * @param flight
+     * @return 需要回调的调用方
+     */
+    synchronized <T> List<Waiter<T>> complete(Flight<T> flight) {
+        if (mFlights.get(flight.mKey) == flight) {
+            mFlights.remove(flight.mKey);
+        }
+        if (null == flight.mFinishWaiters) {
+            flight.mFinishWaiters = new ArrayList<>(flight.mWaiters);
+        }
+        return flight.mFinishWaiters;
+    }
+
+    /***
+     * 按tag移除调用方, 只有当一个请求的所有调用方都取消时才取消该请求
+     *
+     * @param tag
+     * @return 被取消的调用方
+     */
+    synchronized List<Waiter<?>> cancel(Object tag) {
+        List<Waiter<?>> canceled = new ArrayList<>();
+        Iterator<Flight<?>> flightIterator = mFlights.values().iterator();
+        while (flightIterator.hasNext()) {
+            Flight<?> flight = flightIterator.next();
+            Iterator<? extends Waiter<?>> waiterIterator = flight.mWaiters.iterator();
+            while (waiterIterator.hasNext()) {
+                Waiter<?> waiter = waiterIterator.next();
+                if (tag.equals(waiter.mHttpParams.getTag())) {
+                    waiterIterator.remove();
+                    canceled.add(waiter);
+                }
+            }
+            if (flight.mWaiters.isEmpty()) {
+                flightIterator.remove();
+                if (null != flight.mCall) {
+                    flight.mCall.cancel();
+                }
+            }
+        }
+        return canceled;
+    }
+
+    static class Flight<T> extends TagHolder {
+
+        private final String mKey;
+        private final ResponseDecoder<T> mDecoder;
+        private final List<Waiter<T>> mWaiters = new ArrayList<>();
+        private List<Waiter<T>> mFinishWaiters;
+        private Call mCall;
+
+        private Flight(String key, ResponseDecoder<T> decoder, Object tag) {
+            //统计使用发起请求的调用方的tag
+            super(tag);
+            this.mKey = key;
+            this.mDecoder = decoder;
+        }
+    }
+
+    static class Waiter<T> {
+
+        final IHttpParams mHttpParams;
+        final IHttpTypeCallBack<T> mHttpCallBack;
+
+        private Waiter(IHttpParams httpParams, IHttpTypeCallBack<T> httpCallBack) {
+            this.mHttpParams = httpParams;
+            this.mHttpCallBack = httpCallBack;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.library.network.batch;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSource;
+
+/**
+ * 合并请求的格式, 由服务器接口决定
+ * Created by admin on 2016/12/23.
+ */
+public interface BatchEnvelope {
+
+    /***
+     * 把多个请求打包成一个请求体
+     *
+     * @param batchRequests
+     * @return
+     * @throws IOException
+     */
+    RequestBody encode(List<BatchRequest> batchRequests) throws IOException;
+
+    /***
+     * 拆分响应, 在请求线程中执行
+     *
+     * @param source      响应体数据流
+     * @param contentType 响应体类型, 可能为null
+     * @return 和请求顺序一一对应
+     * @throws IOException
+     */
+    List<BatchResponse> decode(BufferedSource source, MediaType contentType) throws IOException;
+}
@@ -0,0 +1,29 @@
+package com.library.network.batch;
+
+import com.library.network.interfaces.IHttpParams;
+
+/**
+ * 合并请求中的单个请求
+ * Created by admin on 2016/12/23.
+ */
+public class BatchRequest {
+
+    public static final String METHOD_GET = "GET";
+    public static final String METHOD_POST = "POST";
+
+    private final String method;
+    private final IHttpParams httpParams;
+
+    BatchRequest(String method, IHttpParams httpParams) {
+        this.method = method;
+        this.httpParams = httpParams;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public IHttpParams getHttpParams() {
+        return httpParams;
+    }
+}
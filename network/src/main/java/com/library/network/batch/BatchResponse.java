@@ -0,0 +1,34 @@
+package com.library.network.batch;
+
+/**
+ * 合并响应中的单个响应
+ * Created by admin on 2016/12/23.
+ */
+public class BatchResponse {
+
+    private int code;
+    private String message;
+    private String body;
+
+    public BatchResponse(int code, String message, String body) {
+        this.code = code;
+        this.message = message;
+        this.body = body;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public boolean isSuccessful() {
+        return code >= 200 && code < 300;
+    }
+}
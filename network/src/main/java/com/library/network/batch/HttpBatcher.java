@@ -0,0 +1,327 @@
+package com.library.network.batch;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.library.network.HttpCode;
+import com.library.network.HttpTypeCallBackAdapter;
+import com.library.network.HttpUtils;
+import com.library.network.decoder.ResponseDecoder;
+import com.library.network.interfaces.IHttpCallBack;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.metrics.TagHolder;
+import com.library.network.utils.HttpCallBackUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSource;
+
+/**
+ * 合并请求: 一段时间内(或达到数量上限)的请求打包成一个请求发送, 响应拆分后回调给各自的IHttpCallBack
+ * 打包格式由BatchEnvelope决定, 默认JsonBatchEnvelope
+ * 回调线程和HttpUtils一致
+ * Created by admin on 2016/12/23.
+ */
+public class HttpBatcher {
+
+    private final String mBatchUrl;
+
+    private final BatchEnvelope mBatchEnvelope;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    //收集请求的时间(毫秒)
+    private volatile long mWindow = 50;
+
+    //一次合并的最大请求数
+    private volatile int mMaxBatchSize = 20;
+
+    private List<Entry> mPendingEntries = new ArrayList<>();
+
+    //已发出, 等待响应
+    private final List<Entry> mSendingEntries = new ArrayList<>();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public HttpBatcher(String batchUrl) {
+        this(batchUrl, new JsonBatchEnvelope());
+    }
+
+    public HttpBatcher(String batchUrl, BatchEnvelope batchEnvelope) {
+        if (null == batchUrl || null == batchEnvelope) {
+            throw new NullPointerException("batchUrl and batchEnvelope is not null");
+        }
+        mBatchUrl = batchUrl;
+        mBatchEnvelope = batchEnvelope;
+    }
+
+    public void setWindow(long window) {
+        mWindow = Math.max(0, window);
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        mMaxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /***
+     * get  合并请求
+     *
+     * @param httpParams
+     * @param httpCallBack
+     */
+    public void get(IHttpParams httpParams, IHttpCallBack httpCallBack) {
+        add(BatchRequest.METHOD_GET, httpParams, httpCallBack);
+    }
+
+    /***
+     * post  合并请求
+     *
+     * @param httpParams
+     * @param httpCallBack
+     */
+    public void post(IHttpParams httpParams, IHttpCallBack httpCallBack) {
+        add(BatchRequest.METHOD_POST, httpParams, httpCallBack);
+    }
+
+    /***
+     * 立即发送已收集的请求
+     */
+    public void flush() {
+        List<Entry> entries;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            if (mPendingEntries.isEmpty()) {
+                return;
+            }
+            entries = mPendingEntries;
+            mPendingEntries = new ArrayList<>();
+        }
+        send(entries);
+    }
+
+    /***
+     * 取消请求, 已发出的合并请求在所有请求都取消后才取消
+     *
+     * @param tag
+     */
+    public void cancel(Object tag) {
+        if (null == tag) {
+            return;
+        }
+        List<Entry> canceled = new ArrayList<>();
+        List<Object> batchTags = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = mPendingEntries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (tag.equals(entry.batchRequest.getHttpParams().getTag())) {
+                    iterator.remove();
+                    canceled.add(entry);
+                }
+            }
+            for (Entry entry : mSendingEntries) {
+                if (!entry.canceled && tag.equals(entry.batchRequest.getHttpParams().getTag())) {
+                    entry.canceled = true;
+                    canceled.add(entry);
+                    if (!batchTags.contains(entry.batchTag) && isAllCanceled(entry.batchTag)) {
+                        batchTags.add(entry.batchTag);
+                    }
+                }
+            }
+        }
+        for (Entry entry : canceled) {
+            sendFailCallBack(entry, HttpCode.CANCEL, "request is cancel");
+        }
+        for (Object batchTag : batchTags) {
+            HttpUtils.getInstances().cancel(batchTag);
+        }
+    }
+
+    private void add(String method, IHttpParams httpParams, IHttpCallBack httpCallBack) {
+        if (null == httpParams) {
+            throw new NullPointerException("httpParams is not null");
+        }
+        final Entry entry = new Entry(new BatchRequest(method, httpParams), httpCallBack);
+        if (null != httpCallBack) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    entry.httpCallBack.onBefore(entry.batchRequest.getHttpParams());
+                }
+            });
+        }
+        List<Entry> entries = null;
+        synchronized (this) {
+            mPendingEntries.add(entry);
+            if (mPendingEntries.size() >= mMaxBatchSize) {
+                mHandler.removeCallbacks(mFlushRunnable);
+                entries = mPendingEntries;
+                mPendingEntries = new ArrayList<>();
+            } else if (mPendingEntries.size() == 1) {
+                mHandler.postDelayed(mFlushRunnable, mWindow);
+            }
+        }
+        if (null != entries) {
+            send(entries);
+        }
+    }
+
+    private void send(final List<Entry> entries) {
+        List<BatchRequest> batchRequests = new ArrayList<>(entries.size());
+        int priority = IHttpParams.PRIORITY_PREFETCH;
+        for (Entry entry : entries) {
+            batchRequests.add(entry.batchRequest);
+            priority = Math.max(priority, entry.batchRequest.getHttpParams().getPriority());
+        }
+        RequestBody requestBody;
+        try {
+            requestBody = mBatchEnvelope.encode(batchRequests);
+        } catch (Exception e) {
+            for (Entry entry : entries) {
+                sendFailCallBack(entry, HttpCode.IO_ERROR, e.getMessage());
+            }
+            return;
+        }
+        //合并后的请求没有单个调用方的tag, 统计时tag为null
+        final Object batchTag = new TagHolder(null);
+        synchronized (this) {
+            for (Entry entry : entries) {
+                entry.batchTag = batchTag;
+            }
+            mSendingEntries.addAll(entries);
+        }
+        BatchParams batchParams = new BatchParams();
+        batchParams.setHttpUrl(mBatchUrl);
+        batchParams.setTag(batchTag);
+        batchParams.setPriority(priority);
+        //在请求线程回调, 再按各自的IHttpParams分发
+        batchParams.setAsyncBack(true);
+        HttpUtils.getInstances().postAsync(batchParams, requestBody, new ResponseDecoder<List<BatchResponse>>() {
+            @Override
+            public List<BatchResponse> decode(BufferedSource source, MediaType contentType) throws IOException {
+                return mBatchEnvelope.decode(source, contentType);
+            }
+        }, new HttpTypeCallBackAdapter<List<BatchResponse>>() {
+            @Override
+            public void onSuccess(IHttpParams httpParams, List<BatchResponse> result) {
+                List<Entry> finished = finish(entries);
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    if (!finished.contains(entry)) {
+                        continue;
+                    }
+                    if (null == result || i >= result.size()) {
+                        sendFailCallBack(entry, HttpCode.DECODE_ERROR, "missing batch response");
+                    } else if (result.get(i).isSuccessful()) {
+                        sendSuccessCallBack(entry, result.get(i).getBody());
+                    } else {
+                        sendFailCallBack(entry, result.get(i).getCode(), result.get(i).getMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void onFail(IHttpParams httpParams, int code, String message) {
+                for (Entry entry : finish(entries)) {
+                    sendFailCallBack(entry, code, message);
+                }
+            }
+
+        });
+    }
+
+    /***
+     * 移除已结束的合并请求
+     *
+     * @return 未取消, 需要回调的请求
+     */
+    private synchronized List<Entry> finish(List<Entry> entries) {
+        List<Entry> finished = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            mSendingEntries.remove(entry);
+            if (!entry.canceled) {
+                finished.add(entry);
+            }
+        }
+        return finished;
+    }
+
+    private boolean isAllCanceled(Object batchTag) {
+        for (Entry entry : mSendingEntries) {
+            if (entry.batchTag == batchTag && !entry.canceled) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendSuccessCallBack(final Entry entry, final String body) {
+        if (null == entry.httpCallBack) {
+            return;
+        }
+        final IHttpParams httpParams = entry.batchRequest.getHttpParams();
+        if (httpParams.isAsyncBack()) {
+            entry.httpCallBack.onSuccess(httpParams, body);
+        } else {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    entry.httpCallBack.onSuccess(httpParams, body);
+                }
+            });
+        }
+        sendOnAfterCallBack(entry);
+    }
+
+    private void sendFailCallBack(final Entry entry, final int code, final String message) {
+        if (null == entry.httpCallBack) {
+            return;
+        }
+        final IHttpParams httpParams = entry.batchRequest.getHttpParams();
+        if (httpParams.isAsyncBack()) {
+            HttpCallBackUtils.onFail(entry.httpCallBack, httpParams, code, message);
+        } else {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    HttpCallBackUtils.onFail(entry.httpCallBack, httpParams, code, message);
+                }
+            });
+        }
+        sendOnAfterCallBack(entry);
+    }
+
+    private void sendOnAfterCallBack(final Entry entry) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                entry.httpCallBack.onAfter(entry.batchRequest.getHttpParams());
+            }
+        });
+    }
+
+    private static class Entry {
+        final BatchRequest batchRequest;
+        final IHttpCallBack httpCallBack;
+        Object batchTag;
+        boolean canceled;
+
+        Entry(BatchRequest batchRequest, IHttpCallBack httpCallBack) {
+            this.batchRequest = batchRequest;
+            this.httpCallBack = httpCallBack;
+        }
+    }
+
+    private static class BatchParams extends IHttpParams {
+    }
+}
@@ -0,0 +1,160 @@
+package com.library.network.batch;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.library.network.utils.HttpUrlUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * 默认的JSON格式
+ * 请求: {"requests":[{"method":"GET","url":"http://host/path?a=1"},{"method":"POST","url":"http://host/path","body":"a=1"}]}
+ * 响应: {"responses":[{"code":200,"message":"OK","body":...}]}, body可以是字符串或JSON
+ * Created by admin on 2016/12/23.
+ */
+public class JsonBatchEnvelope implements BatchEnvelope {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public RequestBody encode(List<BatchRequest> batchRequests) throws IOException {
+        Buffer buffer = new Buffer();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(buffer.outputStream(), UTF_8));
+        writer.beginObject();
+        writer.name("requests").beginArray();
+        for (BatchRequest batchRequest : batchRequests) {
+            writer.beginObject();
+            writer.name("method").value(batchRequest.getMethod());
+            if (BatchRequest.METHOD_GET.equals(batchRequest.getMethod())) {
+                writer.name("url").value(HttpUrlUtils.buildUrl(batchRequest.getHttpParams().getHttpUrl(),
+                        batchRequest.getHttpParams().getParam()).toString());
+            } else {
+                writer.name("url").value(batchRequest.getHttpParams().getHttpUrl());
+                writer.name("body").value(batchRequest.getHttpParams().getParamString());
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+        return RequestBody.create(JSON, buffer.readByteString());
+    }
+
+    @Override
+    public List<BatchResponse> decode(BufferedSource source, MediaType contentType) throws IOException {
+        Charset charset = null == contentType ? UTF_8 : contentType.charset(UTF_8);
+        JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(), charset));
+        List<BatchResponse> batchResponses = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"responses".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                batchResponses.add(readResponse(reader));
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return batchResponses;
+    }
+
+    private BatchResponse readResponse(JsonReader reader) throws IOException {
+        int code = -1;
+        String message = null;
+        String body = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("code".equals(name)) {
+                code = reader.nextInt();
+            } else if ("message".equals(name) && reader.peek() == JsonToken.STRING) {
+                message = reader.nextString();
+            } else if ("body".equals(name)) {
+                body = readBody(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new BatchResponse(code, message, body);
+    }
+
+    /***
+     * 字符串直接返回, JSON对象和数组还原成字符串
+     */
+    private String readBody(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING) {
+            return reader.nextString();
+        }
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter writer = new JsonWriter(stringWriter);
+        copy(reader, writer);
+        writer.close();
+        return stringWriter.toString();
+    }
+
+    private void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    writer.name(reader.nextName());
+                    copy(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copy(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                //保留原始格式, 避免精度变化
+                writer.value(new BigDecimal(reader.nextString()));
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                reader.skipValue();
+                break;
+        }
+    }
+}
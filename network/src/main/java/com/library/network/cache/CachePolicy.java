@@ -0,0 +1,20 @@
+package com.library.network.cache;
+
+/**
+ * 请求缓存策略
+ * Created by admin on 2016/12/5.
+ */
+public enum CachePolicy {
+
+    //按服务器返回的Cache-Control/ETag/Last-Modified处理(默认)
+    DEFAULT,
+
+    //只走网络, 不读取缓存
+    NETWORK_ONLY,
+
+    //有缓存就用缓存(不管是否过期), 没有缓存再走网络
+    CACHE_FIRST,
+
+    //有缓存先返回缓存, 然后在后台发条件请求刷新缓存; 没有缓存走网络
+    STALE_WHILE_REVALIDATE
+}
@@ -0,0 +1,62 @@
+package com.library.network.cache;
+
+/**
+ * 缓存命中统计
+ * Created by admin on 2016/12/5.
+ */
+public class CacheStats {
+
+    //请求总数
+    private long requestCount;
+    //直接命中缓存
+    private long hitCount;
+    //条件请求后服务器返回304, 使用缓存
+    private long conditionalHitCount;
+    //未命中, 从网络获取
+    private long missCount;
+
+    CacheStats(long requestCount, long hitCount, long conditionalHitCount, long missCount) {
+        this.requestCount = requestCount;
+        this.hitCount = hitCount;
+        this.conditionalHitCount = conditionalHitCount;
+        this.missCount = missCount;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getConditionalHitCount() {
+        return conditionalHitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /***
+     * 命中率(包含304)
+     *
+     * @return
+     */
+    public float getHitRate() {
+        if (requestCount <= 0) {
+            return 0;
+        }
+        return (float) (hitCount + conditionalHitCount) / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "requestCount=" + requestCount +
+                ", hitCount=" + hitCount +
+                ", conditionalHitCount=" + conditionalHitCount +
+                ", missCount=" + missCount +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+package com.library.network.cache;
+
+import com.library.network.decoder.ResponseDecoder;
+import com.library.network.interfaces.IHttpParams;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Http缓存策略处理和命中统计
+ * 缓存本身由OkHttp的Cache完成(磁盘缓存、ETag/Last-Modified条件请求)
+ * Created by admin on 2016/12/5.
+ */
+public class HttpCache {
+
+    //内部使用, 指定缓存有效期(秒), 发出请求前会被移除
+    private static final String HEADER_MAX_AGE = "X-Cache-Max-Age";
+
+    //内部使用, 标记无缓存时的回源和后台刷新请求, 不计入命中统计, 发出请求前会被移除
+    private static final String HEADER_INTERNAL = "X-Cache-Internal";
+
+    private static final CacheControl CACHE_FIRST = new CacheControl.Builder()
+            .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+            .build();
+
+    private static final CacheControl REVALIDATE = new CacheControl.Builder()
+            .maxAge(0, TimeUnit.SECONDS)
+            .build();
+
+    private static final ResponseDecoder<Void> REVALIDATE_DECODER = new ResponseDecoder<Void>() {
+        @Override
+        public Void decode(BufferedSource source, MediaType contentType) throws IOException {
+            Buffer buffer = new Buffer();
+            while (source.read(buffer, 8192) != -1) {
+                buffer.clear();
+            }
+            return null;
+        }
+    };
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mConditionalHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /***
+     * 根据请求参数设置缓存策略
+     *
+     * @param builder
+     * @param httpParams
+     */
+    public void applyCachePolicy(Request.Builder builder, IHttpParams httpParams) {
+        if (httpParams.getCacheMaxAge() >= 0) {
+            builder.header(HEADER_MAX_AGE, String.valueOf(httpParams.getCacheMaxAge()));
+        }
+        CachePolicy cachePolicy = httpParams.getCachePolicy();
+        if (null == cachePolicy) {
+            return;
+        }
+        switch (cachePolicy) {
+            case NETWORK_ONLY:
+                builder.cacheControl(CacheControl.FORCE_NETWORK);
+                break;
+            case CACHE_FIRST:
+                builder.cacheControl(CACHE_FIRST);
+                break;
+            case STALE_WHILE_REVALIDATE:
+                builder.cacheControl(CacheControl.FORCE_CACHE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /***
+     * 是否需要先读缓存, 再后台刷新
+     *
+     * @param httpParams
+     * @return
+     */
+    public boolean isStaleWhileRevalidate(IHttpParams httpParams) {
+        return httpParams.getCachePolicy() == CachePolicy.STALE_WHILE_REVALIDATE;
+    }
+
+    /***
+     * only-if-cached请求没有可用缓存时, OkHttp返回504
+     *
+     * @param response
+     * @return
+     */
+    public boolean isUnsatisfiable(Response response) {
+        return response.code() == HttpURLConnection.HTTP_GATEWAY_TIMEOUT
+                && null == response.cacheResponse()
+                && null == response.networkResponse();
+    }
+
+    /***
+     * 创建走网络的请求(带条件请求头, 由OkHttp根据缓存的ETag/Last-Modified添加)
+     *
+     * @param request
+     * @return
+     */
+    public Request createNetworkRequest(Request request) {
+        return request.newBuilder().cacheControl(REVALIDATE).header(HEADER_INTERNAL, "1").build();
+    }
+
+    /***
+     * 后台刷新缓存时使用, 只读完响应体, 读完后OkHttp会更新缓存
+     * 刷新请求由HttpUtils发出, 和普通请求一样经过熔断和排队
+     *
+     * @return
+     */
+    public ResponseDecoder<Void> getRevalidateDecoder() {
+        return REVALIDATE_DECODER;
+    }
+
+    /***
+     * 统计缓存命中(应用拦截器), 每个逻辑请求只统计一次
+     *
+     * @return
+     */
+    public Interceptor getStatsInterceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                if (null != request.header(HEADER_INTERNAL)) {
+                    //和第一次只读缓存的请求属于同一个逻辑请求, 已经统计过
+                    return chain.proceed(request.newBuilder().removeHeader(HEADER_INTERNAL).build());
+                }
+                Response response = chain.proceed(request);
+                mRequestCount.incrementAndGet();
+                if (null != response.cacheResponse() && null == response.networkResponse()) {
+                    mHitCount.incrementAndGet();
+                } else if (null != response.cacheResponse()) {
+                    mConditionalHitCount.incrementAndGet();
+                } else {
+                    mMissCount.incrementAndGet();
+                }
+                return response;
+            }
+        };
+    }
+
+    /***
+     * 按请求指定的有效期改写响应的Cache-Control(网络拦截器)
+     *
+     * @return
+     */
+    public Interceptor getMaxAgeInterceptor() {
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Request request = chain.request();
+                String maxAge = request.header(HEADER_MAX_AGE);
+                if (null == maxAge) {
+                    return chain.proceed(request);
+                }
+                Response response = chain.proceed(request.newBuilder().removeHeader(HEADER_MAX_AGE).build());
+                //304时OkHttp用合并后的响应头更新缓存, 也需要改写, 否则刷新后有效期变回服务器的值
+                if (!response.isSuccessful() && response.code() != HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return response;
+                }
+                return response.newBuilder()
+                        .removeHeader("Pragma")
+                        .header("Cache-Control", "public, max-age=" + maxAge)
+                        .build();
+            }
+        };
+    }
+
+    public CacheStats getCacheStats() {
+        return new CacheStats(mRequestCount.get(), mHitCount.get(), mConditionalHitCount.get(), mMissCount.get());
+    }
+}
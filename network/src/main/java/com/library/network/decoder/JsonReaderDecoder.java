@@ -0,0 +1,36 @@
+package com.library.network.decoder;
+
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * Json流式解析
+ * 边读边解析, 大列表数据不会在内存中生成完整的String
+ * Created by admin on 2016/12/2.
+ */
+public abstract class JsonReaderDecoder<T> implements ResponseDecoder<T> {
+
+    @Override
+    public T decode(BufferedSource source, MediaType contentType) throws IOException {
+        JsonReader jsonReader = new JsonReader(new InputStreamReader(source.inputStream(), StringDecoder.charset(contentType)));
+        try {
+            return read(jsonReader);
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    /***
+     * 从JsonReader中读取对象
+     *
+     * @param jsonReader
+     * @return
+     * @throws IOException
+     */
+    public abstract T read(JsonReader jsonReader) throws IOException;
+}
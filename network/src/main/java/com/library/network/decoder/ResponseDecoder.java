@@ -0,0 +1,25 @@
+package com.library.network.decoder;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * 响应体解析器
+ * 直接从OkHttp的BufferedSource读取数据, 不需要先把整个响应体转成String
+ * 在请求线程中执行
+ * Created by admin on 2016/12/2.
+ */
+public interface ResponseDecoder<T> {
+
+    /***
+     * 解析响应体
+     *
+     * @param source      响应体数据流(由调用方负责关闭)
+     * @param contentType 响应体类型, 可能为null
+     * @return
+     * @throws IOException
+     */
+    T decode(BufferedSource source, MediaType contentType) throws IOException;
+}
@@ -0,0 +1,42 @@
+package com.library.network.decoder;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * 把响应体解析成String
+ * Created by admin on 2016/12/2.
+ */
+public class StringDecoder implements ResponseDecoder<String> {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class StringDecoderHolder {
+        private static StringDecoder instance = new StringDecoder();
+    }
+
+    public static StringDecoder getInstances() {
+        return StringDecoderHolder.instance;
+    }
+
+    @Override
+    public String decode(BufferedSource source, MediaType contentType) throws IOException {
+        return source.readString(charset(contentType));
+    }
+
+    /***
+     * 获取响应体编码, 默认UTF-8
+     *
+     * @param contentType
+     * @return
+     */
+    static Charset charset(MediaType contentType) {
+        if (null == contentType) {
+            return UTF_8;
+        }
+        return contentType.charset(UTF_8);
+    }
+}
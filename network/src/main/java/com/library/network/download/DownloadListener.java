@@ -0,0 +1,16 @@
+package com.library.network.download;
+
+import java.io.File;
+
+/**
+ * 下载回调(在下载线程中回调)
+ * Created by admin on 2016/12/9.
+ */
+public interface DownloadListener {
+
+    void onProgress(long bytesRead, long contentLength, boolean finish);
+
+    void onSuccess(File file);
+
+    void onFail(int code, String message);
+}
@@ -0,0 +1,390 @@
+package com.library.network.download;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.library.base.db.SQLiteHelper;
+import com.library.network.HttpCode;
+import com.library.network.HttpUtils;
+import com.library.network.interfaces.IHttpCallBack;
+import com.library.network.interfaces.IHttpCodeCallBack;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.utils.HttpCallBackUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 下载队列管理
+ * 1.限制同时下载的任务数, 其余任务按优先级排队
+ * 2.按tag暂停、继续、取消
+ * 3.队列保存在数据库(SQLiteHelper)中, 下次启动调用init后继续未完成的下载
+ * 使用前需要先初始化SQLiteHelper
+ * Created by admin on 2016/12/12.
+ */
+public class DownloadManager {
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_HIGH = 10;
+
+    private static final int STATE_WAITING = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_PAUSED = 2;
+    private static final int STATE_FAILED = 3;
+
+    private static final String TABLE_NAME = "http_download";
+    private static final String TAG = "tag";
+    private static final String URL = "url";
+    private static final String SAVE_PATH = "save_path";
+    private static final String SAVE_NAME = "save_name";
+    private static final String PRIORITY = "priority";
+    private static final String STATE = "state";
+    private static final String THREAD_COUNT = "thread_count";
+    private static final String DIGEST_ALGORITHM = "digest_algorithm";
+    private static final String DIGEST = "digest";
+    private static final String CREATE_TIME = "create_time";
+
+    private static final String CREATE_TABLE_SQL = new StringBuffer()
+            .append("create table if not exists ")
+            .append(TABLE_NAME)
+            .append("(")
+            .append(TAG).append(" text primary key,")
+            .append(URL).append(" text,")
+            .append(SAVE_PATH).append(" text,")
+            .append(SAVE_NAME).append(" text,")
+            .append(PRIORITY).append(" integer,")
+            .append(STATE).append(" integer,")
+            .append(THREAD_COUNT).append(" integer,")
+            .append(DIGEST_ALGORITHM).append(" text,")
+            .append(DIGEST).append(" text,")
+            .append(CREATE_TIME).append(" integer")
+            .append(")").toString();
+
+    //同时下载的最大任务数
+    private int mMaxRunningCount = 3;
+    private int mRunningCount;
+    private boolean mInit;
+
+    private final Map<String, DownloadRecord> mRecords = new HashMap<>();
+    private final PriorityQueue<DownloadRecord> mWaitingQueue = new PriorityQueue<>();
+
+    private DownloadManager() {
+
+    }
+
+    private static class DownloadManagerInstances {
+        private static DownloadManager sDownloadManager = new DownloadManager();
+    }
+
+    public static DownloadManager getInstances() {
+        return DownloadManagerInstances.sDownloadManager;
+    }
+
+    /***
+     * 初始化, 恢复上次未完成的下载
+     * 暂停的任务保持暂停, 其余任务重新排队
+     */
+    public synchronized void init() {
+        if (mInit) {
+            return;
+        }
+        mInit = true;
+        SQLiteHelper.getInstances().getSQLiteDatabase().execSQL(CREATE_TABLE_SQL);
+        Cursor cursor = SQLiteHelper.getInstances().query(TABLE_NAME, null, null, null);
+        if (null == cursor) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                DownloadRecord record = new DownloadRecord();
+                record.mHttpParams = new DownloadParams();
+                record.mHttpParams.setTag(cursor.getString(cursor.getColumnIndex(TAG)));
+                record.mHttpParams.setHttpUrl(cursor.getString(cursor.getColumnIndex(URL)));
+                record.mHttpParams.setSaveFilePath(cursor.getString(cursor.getColumnIndex(SAVE_PATH)));
+                record.mHttpParams.setSaveFileName(cursor.getString(cursor.getColumnIndex(SAVE_NAME)));
+                record.mHttpParams.setDownloadThreadCount(cursor.getInt(cursor.getColumnIndex(THREAD_COUNT)));
+                record.mHttpParams.setDownloadDigest(cursor.getString(cursor.getColumnIndex(DIGEST_ALGORITHM)), cursor.getString(cursor.getColumnIndex(DIGEST)));
+                record.mPriority = cursor.getInt(cursor.getColumnIndex(PRIORITY));
+                record.mCreateTime = cursor.getLong(cursor.getColumnIndex(CREATE_TIME));
+                record.mState = cursor.getInt(cursor.getColumnIndex(STATE)) == STATE_PAUSED ? STATE_PAUSED : STATE_WAITING;
+                mRecords.put(record.getTag(), record);
+                if (record.mState == STATE_WAITING) {
+                    mWaitingQueue.add(record);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        schedule();
+    }
+
+    /***
+     * 设置同时下载的最大任务数
+     *
+     * @param maxRunningCount
+     */
+    public synchronized void setMaxRunningCount(int maxRunningCount) {
+        if (maxRunningCount < 1) {
+            throw new IllegalArgumentException("maxRunningCount < 1: " + maxRunningCount);
+        }
+        mMaxRunningCount = maxRunningCount;
+        schedule();
+    }
+
+    /***
+     * 添加下载任务, tag必须是String, 作为任务的唯一标识
+     *
+     * @param httpParams
+     * @param priority     优先级, 越大越先下载
+     * @param httpCallBack
+     */
+    public synchronized void add(IHttpParams httpParams, int priority, IHttpCallBack httpCallBack) {
+        checkInit();
+        HttpUtils.getInstances().checkParams(httpParams);
+        if (!(httpParams.getTag() instanceof String)) {
+            throw new IllegalArgumentException("download tag must be String");
+        }
+        HttpUtils.getInstances().checkSaveFile(httpParams);
+        String tag = (String) httpParams.getTag();
+        DownloadRecord record = mRecords.get(tag);
+        if (null != record) {
+            //任务已存在, 只更新回调
+            record.mHttpCallBack = httpCallBack;
+            return;
+        }
+        record = new DownloadRecord();
+        record.mHttpParams = httpParams;
+        record.mHttpCallBack = httpCallBack;
+        record.mPriority = priority;
+        record.mCreateTime = System.currentTimeMillis();
+        record.mState = STATE_WAITING;
+        mRecords.put(tag, record);
+        mWaitingQueue.add(record);
+        insert(record);
+        schedule();
+    }
+
+    /***
+     * 给恢复的任务设置回调
+     *
+     * @param tag
+     * @param httpCallBack
+     */
+    public synchronized void register(String tag, IHttpCallBack httpCallBack) {
+        DownloadRecord record = mRecords.get(tag);
+        if (null != record) {
+            record.mHttpCallBack = httpCallBack;
+        }
+    }
+
+    /***
+     * 暂停, 已下载的部分会保留
+     *
+     * @param tag
+     */
+    public synchronized void pause(String tag) {
+        DownloadRecord record = mRecords.get(tag);
+        if (null == record || record.mState == STATE_PAUSED) {
+            return;
+        }
+        if (record.mState == STATE_RUNNING) {
+            record.mDownloadTask.cancel();
+            record.mDownloadTask = null;
+            mRunningCount--;
+        } else {
+            mWaitingQueue.remove(record);
+        }
+        updateState(record, STATE_PAUSED);
+        schedule();
+    }
+
+    /***
+     * 继续暂停或失败的任务
+     *
+     * @param tag
+     */
+    public synchronized void resume(String tag) {
+        DownloadRecord record = mRecords.get(tag);
+        if (null == record || (record.mState != STATE_PAUSED && record.mState != STATE_FAILED)) {
+            return;
+        }
+        updateState(record, STATE_WAITING);
+        mWaitingQueue.add(record);
+        schedule();
+    }
+
+    /***
+     * 取消, 删除已下载的部分
+     *
+     * @param tag
+     */
+    public synchronized void cancel(String tag) {
+        DownloadRecord record = mRecords.remove(tag);
+        if (null == record) {
+            return;
+        }
+        if (record.mState == STATE_RUNNING) {
+            record.mDownloadTask.cancel(true);
+            record.mDownloadTask = null;
+            mRunningCount--;
+        } else {
+            mWaitingQueue.remove(record);
+        }
+        record.mState = STATE_PAUSED;
+        SQLiteHelper.getInstances().delete(TABLE_NAME, TAG + "=?", new String[]{tag});
+        DownloadTask.delete(record.mHttpParams);
+        schedule();
+    }
+
+    /***
+     * 按优先级启动等待中的任务
+     */
+    private void schedule() {
+        while (mRunningCount < mMaxRunningCount && !mWaitingQueue.isEmpty()) {
+            DownloadRecord record = mWaitingQueue.poll();
+            mRunningCount++;
+            updateState(record, STATE_RUNNING);
+            record.mRunId++;
+            record.mDownloadTask = HttpUtils.getInstances().download(record.mHttpParams, new DownloadCallBack(record, record.mRunId));
+        }
+    }
+
+    private synchronized void onFinish(DownloadRecord record, int runId, boolean success) {
+        if (record.mState != STATE_RUNNING || record.mRunId != runId || mRecords.get(record.getTag()) != record) {
+            //已暂停或取消
+            return;
+        }
+        record.mDownloadTask = null;
+        mRunningCount--;
+        if (success) {
+            mRecords.remove(record.getTag());
+            SQLiteHelper.getInstances().delete(TABLE_NAME, TAG + "=?", new String[]{record.getTag()});
+        } else {
+            updateState(record, STATE_FAILED);
+        }
+        schedule();
+    }
+
+    private synchronized IHttpCallBack getCallBack(DownloadRecord record) {
+        return record.mHttpCallBack;
+    }
+
+    private void insert(DownloadRecord record) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(TAG, record.getTag());
+        contentValues.put(URL, record.mHttpParams.getHttpUrl());
+        contentValues.put(SAVE_PATH, record.mHttpParams.getSaveFilePath());
+        contentValues.put(SAVE_NAME, record.mHttpParams.getSaveFileName());
+        contentValues.put(PRIORITY, record.mPriority);
+        contentValues.put(STATE, record.mState);
+        contentValues.put(THREAD_COUNT, record.mHttpParams.getDownloadThreadCount());
+        contentValues.put(DIGEST_ALGORITHM, record.mHttpParams.getDownloadDigestAlgorithm());
+        contentValues.put(DIGEST, record.mHttpParams.getDownloadDigest());
+        contentValues.put(CREATE_TIME, record.mCreateTime);
+        SQLiteHelper.getInstances().getSQLiteDatabase().insertWithOnConflict(TABLE_NAME, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private void updateState(DownloadRecord record, int state) {
+        record.mState = state;
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(STATE, state);
+        SQLiteHelper.getInstances().update(TABLE_NAME, contentValues, TAG + "=?", new String[]{record.getTag()});
+    }
+
+    private void checkInit() {
+        if (!mInit) {
+            throw new IllegalStateException("user before must execute init method");
+        }
+    }
+
+    private static class DownloadRecord implements Comparable<DownloadRecord> {
+
+        IHttpParams mHttpParams;
+        IHttpCallBack mHttpCallBack;
+        DownloadTask mDownloadTask;
+        int mPriority;
+        long mCreateTime;
+        int mState;
+        //每次启动下载加1, 用于忽略已暂停的旧任务的回调
+        int mRunId;
+
+        String getTag() {
+            return (String) mHttpParams.getTag();
+        }
+
+        @Override
+        public int compareTo(DownloadRecord another) {
+            if (mPriority != another.mPriority) {
+                return another.mPriority > mPriority ? 1 : -1;
+            }
+            if (mCreateTime != another.mCreateTime) {
+                return mCreateTime < another.mCreateTime ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+
+    /***
+     * 更新队列状态后再回调给调用方
+     */
+    private class DownloadCallBack implements IHttpCallBack, IHttpCodeCallBack {
+
+        private DownloadRecord mRecord;
+        private int mRunId;
+
+        DownloadCallBack(DownloadRecord record, int runId) {
+            this.mRecord = record;
+            this.mRunId = runId;
+        }
+
+        @Override
+        public void onBefore(IHttpParams httpParams) {
+            IHttpCallBack httpCallBack = getCallBack(mRecord);
+            if (null != httpCallBack) {
+                httpCallBack.onBefore(httpParams);
+            }
+        }
+
+        @Override
+        public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+            IHttpCallBack httpCallBack = getCallBack(mRecord);
+            if (null != httpCallBack) {
+                httpCallBack.onProgress(httpParams, bytesRead, contentLength, finish);
+            }
+        }
+
+        @Override
+        public void onAfter(IHttpParams httpParams) {
+            IHttpCallBack httpCallBack = getCallBack(mRecord);
+            if (null != httpCallBack) {
+                httpCallBack.onAfter(httpParams);
+            }
+        }
+
+        @Override
+        public void onFail(IHttpParams httpParams, String message) {
+            onFail(httpParams, HttpCode.IO_ERROR, message);
+        }
+
+        @Override
+        public void onFail(IHttpParams httpParams, int code, String message) {
+            onFinish(mRecord, mRunId, false);
+            IHttpCallBack httpCallBack = getCallBack(mRecord);
+            if (null != httpCallBack) {
+                HttpCallBackUtils.onFail(httpCallBack, httpParams, code, message);
+            }
+        }
+
+        @Override
+        public void onSuccess(IHttpParams httpParams, String body) {
+            onFinish(mRecord, mRunId, true);
+            IHttpCallBack httpCallBack = getCallBack(mRecord);
+            if (null != httpCallBack) {
+                httpCallBack.onSuccess(httpParams, body);
+            }
+        }
+    }
+}
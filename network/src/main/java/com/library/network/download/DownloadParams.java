@@ -0,0 +1,10 @@
+package com.library.network.download;
+
+import com.library.network.interfaces.IHttpParams;
+
+/**
+ * 从数据库恢复的下载任务使用的请求参数
+ * Created by admin on 2016/12/12.
+ */
+class DownloadParams extends IHttpParams {
+}
@@ -0,0 +1,174 @@
+package com.library.network.download;
+
+import com.library.utils.file.StreamUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 分段下载进度, 保存在下载文件旁边的配置文件中, 用于断点续传
+ * Created by admin on 2016/12/9.
+ */
+class DownloadState {
+
+    private static final int VERSION = 1;
+
+    //下载地址
+    String url;
+    //ETag或Last-Modified, 用于If-Range校验服务器文件是否变化, 为空时不支持续传
+    String validator;
+    //文件总长度, -1表示未知
+    long contentLength;
+    //分段
+    Segment[] segments;
+
+    /***
+     * 创建分段
+     *
+     * @param url
+     * @param validator
+     * @param contentLength
+     * @param segmentCount
+     * @return
+     */
+    static DownloadState create(String url, String validator, long contentLength, int segmentCount) {
+        DownloadState downloadState = new DownloadState();
+        downloadState.url = url;
+        downloadState.validator = null == validator ? "" : validator;
+        downloadState.contentLength = contentLength;
+        if (contentLength <= 0) {
+            downloadState.segments = new Segment[]{new Segment(0, -1, 0)};
+            return downloadState;
+        }
+        downloadState.segments = new Segment[segmentCount];
+        long segmentSize = contentLength / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * segmentSize;
+            long end = i == segmentCount - 1 ? contentLength - 1 : start + segmentSize - 1;
+            downloadState.segments[i] = new Segment(start, end, 0);
+        }
+        return downloadState;
+    }
+
+    /***
+     * 是否可以续传
+     *
+     * @param url
+     * @return
+     */
+    boolean isResumable(String url) {
+        return null != this.url && this.url.equals(url) && validator.length() > 0 && contentLength > 0;
+    }
+
+    /***
+     * 已下载的总字节数
+     *
+     * @return
+     */
+    long getDownloaded() {
+        long downloaded = 0;
+        for (Segment segment : segments) {
+            downloaded += segment.downloaded;
+        }
+        return downloaded;
+    }
+
+    /***
+     * 读取配置文件, 文件不存在或格式不对时返回null
+     *
+     * @param file
+     * @return
+     */
+    static DownloadState load(File file) {
+        if (null == file || !file.exists()) {
+            return null;
+        }
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new FileInputStream(file));
+            if (dis.readInt() != VERSION) {
+                return null;
+            }
+            DownloadState downloadState = new DownloadState();
+            downloadState.url = dis.readUTF();
+            downloadState.validator = dis.readUTF();
+            downloadState.contentLength = dis.readLong();
+            int count = dis.readInt();
+            downloadState.segments = new Segment[count];
+            for (int i = 0; i < count; i++) {
+                downloadState.segments[i] = new Segment(dis.readLong(), dis.readLong(), dis.readLong());
+            }
+            return downloadState;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            StreamUtils.close(dis);
+        }
+    }
+
+    /***
+     * 保存配置文件, 先写临时文件再重命名, 避免写到一半时进程被杀导致文件损坏
+     *
+     * @param file
+     */
+    synchronized void save(File file) {
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        DataOutputStream dos = null;
+        try {
+            dos = new DataOutputStream(new FileOutputStream(tempFile));
+            dos.writeInt(VERSION);
+            dos.writeUTF(url);
+            dos.writeUTF(validator);
+            dos.writeLong(contentLength);
+            dos.writeInt(segments.length);
+            for (Segment segment : segments) {
+                dos.writeLong(segment.start);
+                dos.writeLong(segment.end);
+                dos.writeLong(segment.downloaded);
+            }
+            dos.flush();
+        } catch (IOException e) {
+            StreamUtils.close(dos);
+            tempFile.delete();
+            return;
+        }
+        StreamUtils.close(dos);
+        tempFile.renameTo(file);
+    }
+
+    static class Segment {
+
+        //起始位置(包含)
+        final long start;
+        //结束位置(包含), -1表示读到流结束
+        long end;
+        //已下载字节数
+        volatile long downloaded;
+
+        Segment(long start, long end, long downloaded) {
+            this.start = start;
+            this.end = end;
+            this.downloaded = downloaded;
+        }
+
+        boolean isComplete() {
+            return end >= 0 && start + downloaded > end;
+        }
+
+        /***
+         * 剩余字节数, 长度未知时返回Long.MAX_VALUE
+         *
+         * @return
+         */
+        long remaining() {
+            if (end < 0) {
+                return Long.MAX_VALUE;
+            }
+            return end - start - downloaded + 1;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.library.network.download;
+
+import android.text.TextUtils;
+
+import com.library.network.HttpCode;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.utils.HttpFileUtils;
+import com.library.utils.file.FileUtils;
+import com.library.utils.file.StreamUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 分段断点续传下载
+ * 1.支持Range的服务器把文件分成多段并行下载, 每段写入临时文件的对应位置
+ * 2.下载进度保存在配置文件中, 中断后再次下载从上次的位置继续
+ * 3.下载完成后校验文件长度和摘要(可选), 再重命名为目标文件
+ * Created by admin on 2016/12/9.
+ */
+public class DownloadTask {
+
+    //每段最小长度, 小文件不分段
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    //每下载多少字节保存一次进度
+    private static final long SAVE_INTERVAL = 512 * 1024;
+
+    private static final String TEMP_SUFFIX = ".download";
+    private static final String STATE_SUFFIX = ".download.cfg";
+
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+
+    private OkHttpClient mOkHttpClient;
+    private IHttpParams mHttpParams;
+    private DownloadListener mDownloadListener;
+
+    private File mTargetFile;
+    private File mTempFile;
+    private File mStateFile;
+
+    private DownloadState mDownloadState;
+    private final List<Call> mCalls = new ArrayList<>();
+    //未完成的分段数
+    private int mRunningCount;
+    //是否已调用start, 每个DownloadTask只能start一次
+    private boolean mStarted;
+    //是否已回调结果
+    private boolean mFinished;
+    private volatile boolean mCanceled;
+    private volatile boolean mDiscard;
+
+    public DownloadTask(OkHttpClient okHttpClient, IHttpParams httpParams, DownloadListener downloadListener) {
+        this.mOkHttpClient = okHttpClient;
+        this.mHttpParams = httpParams;
+        this.mDownloadListener = downloadListener;
+        File fileDir = FileUtils.createFolder(httpParams.getSaveFilePath());
+        mTargetFile = new File(fileDir, httpParams.getSaveFileName());
+        mTempFile = new File(fileDir, httpParams.getSaveFileName() + TEMP_SUFFIX);
+        mStateFile = new File(fileDir, httpParams.getSaveFileName() + STATE_SUFFIX);
+    }
+
+    /***
+     * 开始下载, 有未完成的下载记录时继续下载
+     * 只能调用一次, 取消或失败后继续下载需要创建新的DownloadTask(如再次调用HttpUtils.download)
+     */
+    public void start() {
+        synchronized (this) {
+            if (mStarted) {
+                throw new IllegalStateException("DownloadTask can only be started once, create a new one to resume");
+            }
+            mStarted = true;
+        }
+        DownloadState downloadState = DownloadState.load(mStateFile);
+        if (null != downloadState && downloadState.isResumable(mHttpParams.getHttpUrl()) && mTempFile.exists()) {
+            mDownloadState = downloadState;
+            resume();
+            return;
+        }
+        mTempFile.delete();
+        mStateFile.delete();
+        probe();
+    }
+
+    /***
+     * 取消下载, 已下载的部分会保留, 创建新的DownloadTask继续下载
+     */
+    public void cancel() {
+        cancel(false);
+    }
+
+    /***
+     * 取消下载
+     *
+     * @param discard 是否删除已下载的部分
+     */
+    public void cancel(boolean discard) {
+        mDiscard = discard;
+        mCanceled = true;
+        synchronized (mCalls) {
+            for (Call call : mCalls) {
+                call.cancel();
+            }
+        }
+    }
+
+    /***
+     * 删除未完成的下载文件和进度
+     *
+     * @param httpParams
+     */
+    public static void delete(IHttpParams httpParams) {
+        File fileDir = new File(httpParams.getSaveFilePath());
+        new File(fileDir, httpParams.getSaveFileName() + TEMP_SUFFIX).delete();
+        new File(fileDir, httpParams.getSaveFileName() + STATE_SUFFIX).delete();
+    }
+
+    /***
+     * 第一次请求用Range: bytes=0-, 服务器返回206说明支持分段, 返回200则整个文件单线程下载
+     * 这次请求的响应直接作为第一段的数据
+     */
+    private void probe() {
+        Request request = createRequest().header("Range", "bytes=0-").build();
+        final Call call = newCall(request);
+        if (null == call) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                onSegmentFail(call, HttpCode.IO_ERROR, e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                long contentLength;
+                String validator = null;
+                int segmentCount = 1;
+                if (response.code() == HttpURLConnection.HTTP_PARTIAL) {
+                    contentLength = parseContentLength(response.header("Content-Range"));
+                    validator = response.header("ETag");
+                    if (TextUtils.isEmpty(validator)) {
+                        validator = response.header("Last-Modified");
+                    }
+                    //没有校验值时无法用If-Range保证各段来自同一个文件, 只用一个分段
+                    segmentCount = TextUtils.isEmpty(validator) ? 1 : getSegmentCount(contentLength);
+                } else if (response.isSuccessful()) {
+                    contentLength = response.body().contentLength();
+                } else {
+                    response.body().close();
+                    onSegmentFail(call, response.code(), response.message());
+                    return;
+                }
+                DownloadState downloadState = DownloadState.create(mHttpParams.getHttpUrl(), validator, contentLength, segmentCount);
+                try {
+                    allocate(downloadState.contentLength);
+                } catch (IOException e) {
+                    response.body().close();
+                    onSegmentFail(call, HttpCode.IO_ERROR, e.getMessage());
+                    return;
+                }
+                synchronized (DownloadTask.this) {
+                    mDownloadState = downloadState;
+                    mRunningCount = downloadState.segments.length;
+                }
+                downloadState.save(mStateFile);
+                for (int i = 1; i < downloadState.segments.length; i++) {
+                    enqueueSegment(downloadState.segments[i]);
+                }
+                readSegment(call, downloadState.segments[0], response);
+            }
+        });
+    }
+
+    /***
+     * 继续未完成的分段
+     */
+    private void resume() {
+        List<DownloadState.Segment> segments = new ArrayList<>();
+        for (DownloadState.Segment segment : mDownloadState.segments) {
+            if (!segment.isComplete()) {
+                segments.add(segment);
+            }
+        }
+        synchronized (this) {
+            mRunningCount = segments.size();
+        }
+        if (segments.isEmpty()) {
+            complete();
+            return;
+        }
+        for (DownloadState.Segment segment : segments) {
+            enqueueSegment(segment);
+        }
+    }
+
+    private void enqueueSegment(final DownloadState.Segment segment) {
+        Request.Builder builder = createRequest()
+                .header("Range", "bytes=" + (segment.start + segment.downloaded) + "-" + segment.end);
+        //空的If-Range会被服务器当作不匹配, 返回整个文件
+        if (!TextUtils.isEmpty(mDownloadState.validator)) {
+            builder.header("If-Range", mDownloadState.validator);
+        }
+        Request request = builder.build();
+        Call call = newCall(request);
+        if (null == call) {
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                onSegmentFail(call, HttpCode.IO_ERROR, e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (response.code() != HttpURLConnection.HTTP_PARTIAL) {
+                    response.body().close();
+                    if (response.isSuccessful()) {
+                        //If-Range校验失败, 服务器文件已变化, 丢弃已下载的部分
+                        fail(HttpCode.IO_ERROR, "file has changed on server", true);
+                    } else {
+                        onSegmentFail(call, response.code(), response.message());
+                    }
+                    return;
+                }
+                readSegment(call, segment, response);
+            }
+        });
+    }
+
+    /***
+     * 读取一段数据, 通过FileChannel写入临时文件的对应位置
+     *
+     * @param call
+     * @param segment
+     * @param response
+     */
+    private void readSegment(Call call, DownloadState.Segment segment, Response response) {
+        RandomAccessFile randomAccessFile = null;
+        FileChannel fileChannel = null;
+        InputStream is = null;
+        try {
+            randomAccessFile = new RandomAccessFile(mTempFile, "rw");
+            fileChannel = randomAccessFile.getChannel();
+            is = response.body().byteStream();
+            byte[] buf = new byte[BUFFER_SIZE];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+            long unsaved = 0;
+            while (!segment.isComplete()) {
+                if (mCanceled) {
+                    throw new IOException("Canceled");
+                }
+                int len = is.read(buf, 0, (int) Math.min(buf.length, segment.remaining()));
+                if (len == -1) {
+                    break;
+                }
+                byteBuffer.clear();
+                byteBuffer.limit(len);
+                long position = segment.start + segment.downloaded;
+                while (byteBuffer.hasRemaining()) {
+                    position += fileChannel.write(byteBuffer, position);
+                }
+                segment.downloaded += len;
+                unsaved += len;
+                if (unsaved >= SAVE_INTERVAL) {
+                    unsaved = 0;
+                    mDownloadState.save(mStateFile);
+                }
+                mDownloadListener.onProgress(mDownloadState.getDownloaded(), mDownloadState.contentLength, false);
+            }
+            if (segment.end < 0) {
+                //长度未知, 读到流结束为止
+                segment.end = segment.downloaded - 1;
+                mDownloadState.contentLength = segment.downloaded;
+            } else if (!segment.isComplete()) {
+                throw new IOException("unexpected end of stream");
+            }
+        } catch (IOException e) {
+            onSegmentFail(call, HttpCode.IO_ERROR, e.getMessage());
+            return;
+        } finally {
+            HttpFileUtils.closeInputStream(is);
+            StreamUtils.close(fileChannel);
+            closeQuietly(randomAccessFile);
+            response.body().close();
+        }
+        onSegmentComplete();
+    }
+
+    private void onSegmentComplete() {
+        synchronized (this) {
+            mRunningCount--;
+            if (mRunningCount > 0 || mFinished) {
+                return;
+            }
+        }
+        complete();
+    }
+
+    private void onSegmentFail(Call call, int code, String message) {
+        if (mCanceled || call.isCanceled()) {
+            fail(HttpCode.CANCEL, "request is cancel", false);
+        } else {
+            fail(code, message, false);
+        }
+    }
+
+    /***
+     * 所有分段完成, 校验后重命名为目标文件
+     */
+    private void complete() {
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+        }
+        String error = verify();
+        if (null != error) {
+            mTempFile.delete();
+            mStateFile.delete();
+            mDownloadListener.onFail(HttpCode.IO_ERROR, error);
+            return;
+        }
+        if (mTargetFile.exists()) {
+            mTargetFile.delete();
+        }
+        if (!mTempFile.renameTo(mTargetFile)) {
+            mDownloadListener.onFail(HttpCode.IO_ERROR, "rename file fail");
+            return;
+        }
+        mStateFile.delete();
+        long contentLength = mTargetFile.length();
+        mDownloadListener.onProgress(contentLength, contentLength, true);
+        mDownloadListener.onSuccess(mTargetFile);
+    }
+
+    /***
+     * 下载失败, 只回调一次
+     *
+     * @param code
+     * @param message
+     * @param discard 是否丢弃已下载的部分
+     */
+    private void fail(int code, String message, boolean discard) {
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+        }
+        synchronized (mCalls) {
+            for (Call call : mCalls) {
+                call.cancel();
+            }
+        }
+        if (!discard && !mDiscard && null != mDownloadState && mDownloadState.isResumable(mHttpParams.getHttpUrl())) {
+            mDownloadState.save(mStateFile);
+        } else {
+            mTempFile.delete();
+            mStateFile.delete();
+        }
+        mDownloadListener.onFail(code, message);
+    }
+
+    /***
+     * 校验文件长度和摘要
+     *
+     * @return 错误信息, 校验通过返回null
+     */
+    private String verify() {
+        if (mDownloadState.contentLength >= 0 && mTempFile.length() != mDownloadState.contentLength) {
+            return "file length error";
+        }
+        String algorithm = mHttpParams.getDownloadDigestAlgorithm();
+        String digest = mHttpParams.getDownloadDigest();
+        if (TextUtils.isEmpty(algorithm) || TextUtils.isEmpty(digest)) {
+            return null;
+        }
+        FileInputStream fis = null;
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
+            fis = new FileInputStream(mTempFile);
+            byte[] buf = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = fis.read(buf)) != -1) {
+                messageDigest.update(buf, 0, len);
+            }
+            if (!digest.equalsIgnoreCase(toHex(messageDigest.digest()))) {
+                return "file digest error";
+            }
+        } catch (Exception e) {
+            return e.getMessage();
+        } finally {
+            StreamUtils.close(fis);
+        }
+        return null;
+    }
+
+    /***
+     * 预先分配文件大小
+     *
+     * @param contentLength
+     * @throws IOException
+     */
+    private void allocate(long contentLength) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(mTempFile, "rw");
+        try {
+            if (contentLength > 0) {
+                randomAccessFile.setLength(contentLength);
+            }
+        } finally {
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    private int getSegmentCount(long contentLength) {
+        if (contentLength <= 0) {
+            return 1;
+        }
+        int segmentCount = Math.max(1, mHttpParams.getDownloadThreadCount());
+        return (int) Math.max(1, Math.min(segmentCount, contentLength / MIN_SEGMENT_SIZE));
+    }
+
+    private Request.Builder createRequest() {
+        Request.Builder builder = new Request.Builder();
+        builder.url(mHttpParams.getHttpUrl());
+        if (null != mHttpParams.getTag()) {
+            builder.tag(mHttpParams.getTag());
+        }
+        //下载的文件不写入Http缓存
+        builder.cacheControl(NO_STORE);
+        return builder;
+    }
+
+    /***
+     * 创建Call, 已取消时返回null
+     *
+     * @param request
+     * @return
+     */
+    private Call newCall(Request request) {
+        Call call = mOkHttpClient.newCall(request);
+        synchronized (mCalls) {
+            mCalls.add(call);
+        }
+        if (mCanceled) {
+            call.cancel();
+            fail(HttpCode.CANCEL, "request is cancel", false);
+            return null;
+        }
+        return call;
+    }
+
+    /***
+     * Content-Range: bytes 0-1023/4096
+     *
+     * @param contentRange
+     * @return
+     */
+    private static long parseContentLength(String contentRange) {
+        if (TextUtils.isEmpty(contentRange)) {
+            return -1;
+        }
+        int index = contentRange.lastIndexOf('/');
+        if (index < 0 || index == contentRange.length() - 1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            if ((b & 0xFF) < 0x10) {
+                hex.append("0");
+            }
+            hex.append(Integer.toHexString(b & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        if (null == randomAccessFile) {
+            return;
+        }
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.library.network.future;
+
+/**
+ * 异步结果转换, 用于串联请求
+ * Created by admin on 2016/12/26.
+ */
+public interface AsyncFunction<T, R> {
+
+    HttpFuture<R> apply(T input) throws Exception;
+}
@@ -0,0 +1,10 @@
+package com.library.network.future;
+
+/**
+ * 结果转换
+ * Created by admin on 2016/12/26.
+ */
+public interface Function<T, R> {
+
+    R apply(T input) throws Exception;
+}
@@ -0,0 +1,17 @@
+package com.library.network.future;
+
+/**
+ * HttpFuture结果回调
+ * Created by admin on 2016/12/26.
+ */
+public interface FutureCallback<T> {
+
+    void onSuccess(T result);
+
+    /***
+     * 请求失败时为{@link com.library.network.HttpException}, 取消时为CancellationException
+     *
+     * @param throwable
+     */
+    void onFailure(Throwable throwable);
+}
@@ -0,0 +1,418 @@
+package com.library.network.future;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可组合的请求结果
+ * 监听和转换都可以指定Executor, 默认不切换线程(directExecutor在完成请求的线程执行)
+ * 取消时会向上传递: 转换、合并得到的HttpFuture取消时, 原请求的Call也会取消
+ * Created by admin on 2016/12/26.
+ */
+public class HttpFuture<T> implements Future<T> {
+
+    private static final int PENDING = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int CANCELLED = 3;
+
+    private int mState = PENDING;
+
+    private T mResult;
+
+    private Throwable mException;
+
+    private List<Runnable> mListeners = new ArrayList<>();
+
+    //取消时执行, 用于取消Call
+    private Runnable mOnCancel;
+
+    /***
+     * 在完成的线程直接执行
+     *
+     * @return
+     */
+    public static Executor directExecutor() {
+        return DirectExecutor.INSTANCE;
+    }
+
+    /***
+     * 在主线程执行
+     *
+     * @return
+     */
+    public static Executor mainThreadExecutor() {
+        return MainThreadExecutor.INSTANCE;
+    }
+
+    /***
+     * 设置结果
+     *
+     * @param result
+     * @return 已完成或已取消时返回false
+     */
+    public boolean set(T result) {
+        return complete(SUCCESS, result, null);
+    }
+
+    /***
+     * 设置失败
+     *
+     * @param throwable
+     * @return 已完成或已取消时返回false
+     */
+    public boolean setException(Throwable throwable) {
+        if (null == throwable) {
+            throw new NullPointerException("throwable is not null");
+        }
+        return complete(FAILURE, null, throwable);
+    }
+
+    /***
+     * 设置取消时执行的操作, 已取消时直接执行
+     *
+     * @param onCancel
+     */
+    public void setOnCancel(Runnable onCancel) {
+        synchronized (this) {
+            if (mState == PENDING) {
+                mOnCancel = onCancel;
+                return;
+            }
+            if (mState != CANCELLED) {
+                return;
+            }
+        }
+        onCancel.run();
+    }
+
+    /***
+     * 取消, 正在执行的请求会被取消
+     *
+     * @param mayInterruptIfRunning 不使用, 请求总是会被取消
+     * @return
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Runnable onCancel;
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mState = CANCELLED;
+            onCancel = mOnCancel;
+            mOnCancel = null;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+        if (null != onCancel) {
+            onCancel.run();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != PENDING;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (mState == PENDING) {
+            wait();
+        }
+        return getDone();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (mState == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getDone();
+    }
+
+    /***
+     * 添加完成监听, 已完成时直接执行
+     *
+     * @param listener
+     * @param executor 执行listener的线程
+     */
+    public void addListener(final Runnable listener, final Executor executor) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(listener);
+            }
+        };
+        synchronized (this) {
+            if (mState == PENDING) {
+                mListeners.add(runnable);
+                return;
+            }
+        }
+        runnable.run();
+    }
+
+    /***
+     * 添加结果回调
+     *
+     * @param callback
+     * @param executor 执行回调的线程
+     */
+    public void addCallback(final FutureCallback<? super T> callback, Executor executor) {
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                T result;
+                try {
+                    result = getDone();
+                } catch (ExecutionException e) {
+                    callback.onFailure(e.getCause());
+                    return;
+                } catch (CancellationException e) {
+                    callback.onFailure(e);
+                    return;
+                }
+                callback.onSuccess(result);
+            }
+        }, executor);
+    }
+
+    /***
+     * 转换结果
+     *
+     * @param function
+     * @param executor 执行function的线程
+     * @return 取消时同时取消当前请求
+     */
+    public <R> HttpFuture<R> transform(final Function<? super T, ? extends R> function, Executor executor) {
+        final HttpFuture<R> output = new HttpFuture<>();
+        output.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                cancel(false);
+            }
+        });
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (output.isDone()) {
+                    return;
+                }
+                try {
+                    output.set(function.apply(getDone()));
+                } catch (ExecutionException e) {
+                    output.setException(e.getCause());
+                } catch (CancellationException e) {
+                    output.cancel(false);
+                } catch (Exception e) {
+                    output.setException(e);
+                }
+            }
+        }, executor);
+        return output;
+    }
+
+    /***
+     * 用结果发起下一个请求
+     *
+     * @param function
+     * @param executor 执行function的线程
+     * @return 取消时同时取消当前请求和下一个请求
+     */
+    public <R> HttpFuture<R> transformAsync(final AsyncFunction<? super T, R> function, Executor executor) {
+        final HttpFuture<R> output = new HttpFuture<>();
+        output.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                cancel(false);
+            }
+        });
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (output.isDone()) {
+                    return;
+                }
+                final HttpFuture<R> next;
+                try {
+                    next = function.apply(getDone());
+                } catch (ExecutionException e) {
+                    output.setException(e.getCause());
+                    return;
+                } catch (CancellationException e) {
+                    output.cancel(false);
+                    return;
+                } catch (Exception e) {
+                    output.setException(e);
+                    return;
+                }
+                if (null == next) {
+                    output.setException(new NullPointerException("AsyncFunction returned null"));
+                    return;
+                }
+                output.setOnCancel(new Runnable() {
+                    @Override
+                    public void run() {
+                        next.cancel(false);
+                    }
+                });
+                next.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        output.setFrom(next);
+                    }
+                }, directExecutor());
+            }
+        }, executor);
+        return output;
+    }
+
+    /***
+     * 合并多个结果, 全部成功时按顺序返回结果, 任意一个失败时直接失败
+     *
+     * @param futures
+     * @return 取消时取消所有请求
+     */
+    public static <T> HttpFuture<List<T>> allAsList(final List<? extends HttpFuture<? extends T>> futures) {
+        final HttpFuture<List<T>> output = new HttpFuture<>();
+        if (futures.isEmpty()) {
+            output.set(new ArrayList<T>());
+            return output;
+        }
+        output.setOnCancel(new Runnable() {
+            @Override
+            public void run() {
+                for (HttpFuture<? extends T> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        });
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (final HttpFuture<? extends T> future : futures) {
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.getDone();
+                    } catch (ExecutionException e) {
+                        output.setException(e.getCause());
+                        return;
+                    } catch (CancellationException e) {
+                        output.cancel(false);
+                        return;
+                    }
+                    if (remaining.decrementAndGet() > 0) {
+                        return;
+                    }
+                    List<T> results = new ArrayList<>(futures.size());
+                    try {
+                        for (HttpFuture<? extends T> done : futures) {
+                            results.add(done.getDone());
+                        }
+                    } catch (ExecutionException e) {
+                        output.setException(e.getCause());
+                        return;
+                    }
+                    output.set(results);
+                }
+            }, directExecutor());
+        }
+        return output;
+    }
+
+    private void setFrom(HttpFuture<T> future) {
+        try {
+            set(future.getDone());
+        } catch (ExecutionException e) {
+            setException(e.getCause());
+        } catch (CancellationException e) {
+            cancel(false);
+        }
+    }
+
+    private synchronized T getDone() throws ExecutionException {
+        switch (mState) {
+            case SUCCESS:
+                return mResult;
+            case FAILURE:
+                throw new ExecutionException(mException);
+            case CANCELLED:
+                throw new CancellationException("request is cancel");
+            default:
+                throw new IllegalStateException("future is not done");
+        }
+    }
+
+    private boolean complete(int state, T result, Throwable throwable) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (mState != PENDING) {
+                return false;
+            }
+            mState = state;
+            mResult = result;
+            mException = throwable;
+            mOnCancel = null;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    private static class DirectExecutor implements Executor {
+
+        static final DirectExecutor INSTANCE = new DirectExecutor();
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
+    private static class MainThreadExecutor implements Executor {
+
+        static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                command.run();
+            } else {
+                mHandler.post(command);
+            }
+        }
+    }
+}
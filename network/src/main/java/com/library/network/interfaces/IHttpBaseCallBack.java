@@ -0,0 +1,22 @@
+package com.library.network.interfaces;
+
+/**
+ * 请求回调公共部分(开始、进度、结束、失败)
+ * Created by admin on 2016/12/2.
+ */
+public interface IHttpBaseCallBack {
+
+    void onBefore(IHttpParams httpParams);
+
+    void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish);
+
+    void onAfter(IHttpParams httpParams);
+
+    /***
+     * 请求失败, 需要错误码时同时实现{@link IHttpCodeCallBack}
+     *
+     * @param httpParams
+     * @param message
+     */
+    void onFail(IHttpParams httpParams, String message);
+}
@@ -0,0 +1,17 @@
+package com.library.network.interfaces;
+
+/**
+ * 需要失败错误码的回调同时实现该接口, 失败时回调onFail(IHttpParams, int, String), 不再回调onFail(IHttpParams, String)
+ * Created by admin on 2016/12/19.
+ */
+public interface IHttpCodeCallBack {
+
+    /***
+     * 请求失败
+     *
+     * @param httpParams
+     * @param code       Http状态码, 小于0时见{@link com.library.network.HttpCode}
+     * @param message
+     */
+    void onFail(IHttpParams httpParams, int code, String message);
+}
@@ -2,6 +2,10 @@ package com.library.network.interfaces;
 
 import android.os.Handler;
 
+import com.library.network.cache.CachePolicy;
+import com.library.network.retry.RetryPolicy;
+import com.library.network.utils.HttpUrlUtils;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -10,6 +14,15 @@ import java.util.Map;
  */
 public abstract class IHttpParams {
 
+    //预加载, 最后执行
+    public static final int PRIORITY_PREFETCH = 0;
+    //后台请求
+    public static final int PRIORITY_BACKGROUND = 1;
+    //默认
+    public static final int PRIORITY_NORMAL = 2;
+    //用户正在等待结果的请求, 不受并发数限制, 总是最先执行
+    public static final int PRIORITY_USER_BLOCKING = 3;
+
     //请求地址
     private String httpUrl;
 
@@ -40,19 +53,7 @@ public abstract class IHttpParams {
     }
 
     public String getParamString() {
-        StringBuffer stringBuffer = new StringBuffer();
-        if (null != param && param.size() > 0) {
-            for (Map.Entry<String, Object> entry : param.entrySet()) {
-                if (stringBuffer.length() > 0) {
-                    stringBuffer.append("&");
-                }
-                if (null == entry) {
-                    continue;
-                }
-                stringBuffer.append(entry.getKey()).append("=").append(entry.getValue().toString());
-            }
-        }
-        return stringBuffer.toString();
+        return HttpUrlUtils.encodeParams(param);
     }
 
     //请求Tag
@@ -99,6 +100,91 @@ public abstract class IHttpParams {
         this.saveFileName = saveFileName;
     }
 
+    //下载分段数(服务器支持Range时并行下载)
+    private int downloadThreadCount = 3;
+
+    public int getDownloadThreadCount() {
+        return downloadThreadCount;
+    }
+
+    public void setDownloadThreadCount(int downloadThreadCount) {
+        this.downloadThreadCount = downloadThreadCount;
+    }
+
+    //下载完成后校验的摘要算法(MD5、SHA-1、SHA-256), 为空不校验
+    private String downloadDigestAlgorithm;
+
+    //下载文件的摘要(16进制)
+    private String downloadDigest;
+
+    public String getDownloadDigestAlgorithm() {
+        return downloadDigestAlgorithm;
+    }
+
+    public String getDownloadDigest() {
+        return downloadDigest;
+    }
+
+    public void setDownloadDigest(String downloadDigestAlgorithm, String downloadDigest) {
+        this.downloadDigestAlgorithm = downloadDigestAlgorithm;
+        this.downloadDigest = downloadDigest;
+    }
+
+    //进度回调最小时间间隔(毫秒)
+    private long progressInterval = 100;
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    //进度回调最小百分比步长
+    private int progressStep = 1;
+
+    public int getProgressStep() {
+        return progressStep;
+    }
+
+    public void setProgressStep(int progressStep) {
+        this.progressStep = progressStep;
+    }
+
+    //请求体是否使用gzip压缩(需要服务器支持)
+    private boolean gzipRequest;
+
+    public boolean isGzipRequest() {
+        return gzipRequest;
+    }
+
+    public void setGzipRequest(boolean gzipRequest) {
+        this.gzipRequest = gzipRequest;
+    }
+
+    //分片上传每片大小(字节)
+    private int uploadChunkSize = 512 * 1024;
+
+    public int getUploadChunkSize() {
+        return uploadChunkSize;
+    }
+
+    public void setUploadChunkSize(int uploadChunkSize) {
+        this.uploadChunkSize = uploadChunkSize;
+    }
+
+    //分片上传每片失败重试次数
+    private int uploadRetryCount = 3;
+
+    public int getUploadRetryCount() {
+        return uploadRetryCount;
+    }
+
+    public void setUploadRetryCount(int uploadRetryCount) {
+        this.uploadRetryCount = uploadRetryCount;
+    }
+
     //Handler
     private Handler handler;
 
@@ -109,4 +195,48 @@ public abstract class IHttpParams {
     public void setHandler(Handler handler) {
         this.handler = handler;
     }
+
+    //缓存策略
+    private CachePolicy cachePolicy = CachePolicy.DEFAULT;
+
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    //缓存有效期(秒), 覆盖服务器返回的Cache-Control, 小于0时使用服务器设置
+    private int cacheMaxAge = -1;
+
+    public int getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
+    public void setCacheMaxAge(int cacheMaxAge) {
+        this.cacheMaxAge = cacheMaxAge;
+    }
+
+    //重试策略, 为空时使用HttpUtils的默认策略
+    private RetryPolicy retryPolicy;
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    //请求优先级(异步请求), 越大越先执行
+    private int priority = PRIORITY_NORMAL;
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
 }
@@ -0,0 +1,10 @@
+package com.library.network.interfaces;
+
+/**
+ * 带类型的请求回调, 响应体由{@link com.library.network.decoder.ResponseDecoder}直接解析成对象
+ * Created by admin on 2016/12/2.
+ */
+public interface IHttpTypeCallBack<T> extends IHttpBaseCallBack {
+
+    void onSuccess(IHttpParams httpParams, T result);
+}
@@ -0,0 +1,91 @@
+package com.library.network.metrics;
+
+import java.util.Arrays;
+
+/**
+ * 单个接口的统计, 只保留最近的请求耗时用于计算百分位
+ * Created by admin on 2016/12/21.
+ */
+class EndpointRecorder {
+
+    //保留最近的请求数
+    private static final int WINDOW_SIZE = 256;
+
+    private final String mEndpoint;
+
+    private final long[] mTotalTimes = new long[WINDOW_SIZE];
+
+    private final long[] mTtfbs = new long[WINDOW_SIZE];
+
+    private int mTotalIndex;
+
+    private int mTotalSize;
+
+    private int mTtfbIndex;
+
+    private int mTtfbSize;
+
+    private long mRequestCount;
+
+    private long mErrorCount;
+
+    private long mBytesIn;
+
+    private long mBytesOut;
+
+    EndpointRecorder(String endpoint) {
+        mEndpoint = endpoint;
+    }
+
+    synchronized void record(RequestMetrics requestMetrics) {
+        mRequestCount++;
+        if (!requestMetrics.isSuccessful()) {
+            mErrorCount++;
+        }
+        mBytesIn += requestMetrics.bytesIn;
+        mBytesOut += Math.max(0, requestMetrics.bytesOut);
+        if (requestMetrics.totalTime >= 0) {
+            mTotalTimes[mTotalIndex] = requestMetrics.totalTime;
+            mTotalIndex = (mTotalIndex + 1) % WINDOW_SIZE;
+            mTotalSize = Math.min(mTotalSize + 1, WINDOW_SIZE);
+        }
+        if (requestMetrics.ttfb >= 0) {
+            mTtfbs[mTtfbIndex] = requestMetrics.ttfb;
+            mTtfbIndex = (mTtfbIndex + 1) % WINDOW_SIZE;
+            mTtfbSize = Math.min(mTtfbSize + 1, WINDOW_SIZE);
+        }
+    }
+
+    EndpointStats snapshot() {
+        long[] totalTimes;
+        long[] ttfbs;
+        EndpointStats endpointStats = new EndpointStats();
+        synchronized (this) {
+            endpointStats.endpoint = mEndpoint;
+            endpointStats.requestCount = mRequestCount;
+            endpointStats.errorCount = mErrorCount;
+            endpointStats.bytesIn = mBytesIn;
+            endpointStats.bytesOut = mBytesOut;
+            totalTimes = Arrays.copyOf(mTotalTimes, mTotalSize);
+            ttfbs = Arrays.copyOf(mTtfbs, mTtfbSize);
+        }
+        //排序放在锁外, 不阻塞记录
+        Arrays.sort(totalTimes);
+        Arrays.sort(ttfbs);
+        endpointStats.totalP50 = percentile(totalTimes, 50);
+        endpointStats.totalP90 = percentile(totalTimes, 90);
+        endpointStats.totalP99 = percentile(totalTimes, 99);
+        endpointStats.ttfbP50 = percentile(ttfbs, 50);
+        endpointStats.ttfbP90 = percentile(ttfbs, 90);
+        endpointStats.ttfbP99 = percentile(ttfbs, 99);
+        return endpointStats;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,77 @@
+package com.library.network.metrics;
+
+/**
+ * 单个接口的统计快照, 百分位按最近的请求计算, 时间单位毫秒
+ * Created by admin on 2016/12/21.
+ */
+public class EndpointStats {
+
+    String endpoint;
+    long requestCount;
+    long errorCount;
+    long bytesIn;
+    long bytesOut;
+    long totalP50;
+    long totalP90;
+    long totalP99;
+    long ttfbP50;
+    long ttfbP90;
+    long ttfbP99;
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public long getTotalP50() {
+        return totalP50;
+    }
+
+    public long getTotalP90() {
+        return totalP90;
+    }
+
+    public long getTotalP99() {
+        return totalP99;
+    }
+
+    public long getTtfbP50() {
+        return ttfbP50;
+    }
+
+    public long getTtfbP90() {
+        return ttfbP90;
+    }
+
+    public long getTtfbP99() {
+        return ttfbP99;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats{" +
+                "endpoint='" + endpoint + '\'' +
+                ", requestCount=" + requestCount +
+                ", errorCount=" + errorCount +
+                ", bytesIn=" + bytesIn +
+                ", bytesOut=" + bytesOut +
+                ", total=" + totalP50 + "/" + totalP90 + "/" + totalP99 +
+                ", ttfb=" + ttfbP50 + "/" + ttfbP90 + "/" + ttfbP99 +
+                '}';
+    }
+}
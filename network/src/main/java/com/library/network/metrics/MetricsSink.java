@@ -0,0 +1,22 @@
+package com.library.network.metrics;
+
+/**
+ * 网络统计输出, 在子线程回调
+ * Created by admin on 2016/12/21.
+ */
+public interface MetricsSink {
+
+    /***
+     * 每个请求结束时回调
+     *
+     * @param requestMetrics
+     */
+    void onRequest(RequestMetrics requestMetrics);
+
+    /***
+     * 定时回调统计快照
+     *
+     * @param metricsSnapshot
+     */
+    void onSnapshot(MetricsSnapshot metricsSnapshot);
+}
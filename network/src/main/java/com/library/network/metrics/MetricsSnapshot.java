@@ -0,0 +1,58 @@
+package com.library.network.metrics;
+
+import java.util.List;
+
+/**
+ * 网络统计快照
+ * Created by admin on 2016/12/21.
+ */
+public class MetricsSnapshot {
+
+    //快照时间
+    long time;
+    List<EndpointStats> endpointStats;
+    //连接池中的连接数
+    int connectionCount;
+    //连接池中空闲的连接数
+    int idleConnectionCount;
+    //正在执行的请求数
+    int runningCallsCount;
+    //排队中的请求数
+    int queuedCallsCount;
+
+    public long getTime() {
+        return time;
+    }
+
+    public List<EndpointStats> getEndpointStats() {
+        return endpointStats;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public int getIdleConnectionCount() {
+        return idleConnectionCount;
+    }
+
+    public int getRunningCallsCount() {
+        return runningCallsCount;
+    }
+
+    public int getQueuedCallsCount() {
+        return queuedCallsCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{" +
+                "time=" + time +
+                ", connectionCount=" + connectionCount +
+                ", idleConnectionCount=" + idleConnectionCount +
+                ", runningCallsCount=" + runningCallsCount +
+                ", queuedCallsCount=" + queuedCallsCount +
+                ", endpointStats=" + endpointStats +
+                '}';
+    }
+}
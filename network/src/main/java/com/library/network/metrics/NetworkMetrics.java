@@ -0,0 +1,331 @@
+package com.library.network.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Connection;
+import okhttp3.Dns;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * 网络请求统计: 每个请求的DNS/连接/首字节/总耗时和流量, 按接口统计百分位, 连接池状态
+ * OkHttp 3.4没有EventListener, 用拦截器和Dns计时:
+ * Interceptor → Dns → NetworkInterceptor 都在同一个线程执行, 通过ThreadLocal关联到当前请求
+ * 连接耗时是应用拦截器到网络拦截器之间去掉DNS的时间, 包含TCP和TLS握手
+ * Created by admin on 2016/12/21.
+ */
+public class NetworkMetrics {
+
+    //最多统计的接口数, 超过后按host合并
+    private static final int MAX_ENDPOINTS = 200;
+
+    private static final ThreadLocal<RequestMetrics> sCurrent = new ThreadLocal<>();
+
+    private final Map<String, EndpointRecorder> mRecorders = new LinkedHashMap<>();
+
+    private volatile OkHttpClient mOkHttpClient;
+
+    private volatile MetricsSink mMetricsSink;
+
+    private ScheduledExecutorService mScheduledExecutorService;
+
+    private ScheduledFuture<?> mSnapshotFuture;
+
+    /***
+     * 调用方的tag: 内部tag取出保存的tag, 没有设置tag时OkHttp返回Request本身, 视为null
+     */
+    private static Object getCallerTag(Request request) {
+        Object tag = request.tag();
+        if (tag instanceof TagHolder) {
+            return ((TagHolder) tag).getTag();
+        }
+        return tag instanceof Request ? null : tag;
+    }
+
+    private final Interceptor mInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            RequestMetrics requestMetrics = new RequestMetrics();
+            requestMetrics.tag = getCallerTag(request);
+            requestMetrics.method = request.method();
+            requestMetrics.endpoint = createEndpoint(request.url());
+            requestMetrics.bytesOut = null == request.body() ? 0 : request.body().contentLength();
+            requestMetrics.startNanos = System.nanoTime();
+            sCurrent.set(requestMetrics);
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                finish(requestMetrics, 0);
+                throw e;
+            } finally {
+                sCurrent.remove();
+            }
+            requestMetrics.code = response.code();
+            requestMetrics.fromCache = null == response.networkResponse();
+            if (null == response.body()) {
+                finish(requestMetrics, 0);
+                return response;
+            }
+            //响应体读完或关闭时才结束计时
+            return response.newBuilder()
+                    .body(new MetricsResponseBody(response.body(), requestMetrics))
+                    .build();
+        }
+    };
+
+    private final Interceptor mNetworkInterceptor = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            RequestMetrics requestMetrics = sCurrent.get();
+            if (null == requestMetrics) {
+                return chain.proceed(chain.request());
+            }
+            requestMetrics.networkStartNanos = System.nanoTime();
+            requestMetrics.connectTime = Math.max(0, toMillis(requestMetrics.networkStartNanos
+                    - requestMetrics.startNanos - requestMetrics.dnsNanos));
+            Connection connection = chain.connection();
+            requestMetrics.tls = null != connection && null != connection.handshake();
+            Response response = chain.proceed(chain.request());
+            requestMetrics.ttfb = toMillis(System.nanoTime() - requestMetrics.networkStartNanos);
+            return response;
+        }
+    };
+
+    private final Dns mDns = new Dns() {
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            long start = System.nanoTime();
+            try {
+                return Dns.SYSTEM.lookup(hostname);
+            } finally {
+                RequestMetrics requestMetrics = sCurrent.get();
+                if (null != requestMetrics) {
+                    requestMetrics.dnsNanos += System.nanoTime() - start;
+                    requestMetrics.dnsTime = toMillis(requestMetrics.dnsNanos);
+                }
+            }
+        }
+    };
+
+    /***
+     * 应用拦截器, 添加到OkHttpClient.Builder.addInterceptor
+     *
+     * @return
+     */
+    public Interceptor getInterceptor() {
+        return mInterceptor;
+    }
+
+    /***
+     * 网络拦截器, 添加到OkHttpClient.Builder.addNetworkInterceptor
+     *
+     * @return
+     */
+    public Interceptor getNetworkInterceptor() {
+        return mNetworkInterceptor;
+    }
+
+    /***
+     * DNS计时, 设置到OkHttpClient.Builder.dns
+     *
+     * @return
+     */
+    public Dns getDns() {
+        return mDns;
+    }
+
+    /***
+     * 设置统计连接池和Dispatcher状态的OkHttpClient
+     *
+     * @param okHttpClient
+     */
+    public void setOkHttpClient(OkHttpClient okHttpClient) {
+        mOkHttpClient = okHttpClient;
+    }
+
+    /***
+     * 设置统计输出
+     *
+     * @param metricsSink      为null时停止输出
+     * @param snapshotInterval 快照输出间隔(毫秒), <=0不定时输出快照
+     */
+    public synchronized void setSink(MetricsSink metricsSink, long snapshotInterval) {
+        mMetricsSink = metricsSink;
+        if (null != mSnapshotFuture) {
+            mSnapshotFuture.cancel(false);
+            mSnapshotFuture = null;
+        }
+        if (null == metricsSink || snapshotInterval <= 0) {
+            return;
+        }
+        if (null == mScheduledExecutorService) {
+            mScheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        }
+        mSnapshotFuture = mScheduledExecutorService.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                MetricsSink sink = mMetricsSink;
+                if (null != sink) {
+                    sink.onSnapshot(snapshot());
+                }
+            }
+        }, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * 获取统计快照
+     *
+     * @return
+     */
+    public MetricsSnapshot snapshot() {
+        List<EndpointRecorder> recorders;
+        synchronized (mRecorders) {
+            recorders = new ArrayList<>(mRecorders.values());
+        }
+        List<EndpointStats> endpointStats = new ArrayList<>(recorders.size());
+        for (EndpointRecorder recorder : recorders) {
+            endpointStats.add(recorder.snapshot());
+        }
+        MetricsSnapshot metricsSnapshot = new MetricsSnapshot();
+        metricsSnapshot.time = System.currentTimeMillis();
+        metricsSnapshot.endpointStats = endpointStats;
+        OkHttpClient okHttpClient = mOkHttpClient;
+        if (null != okHttpClient) {
+            metricsSnapshot.connectionCount = okHttpClient.connectionPool().connectionCount();
+            metricsSnapshot.idleConnectionCount = okHttpClient.connectionPool().idleConnectionCount();
+            metricsSnapshot.runningCallsCount = okHttpClient.dispatcher().runningCallsCount();
+            metricsSnapshot.queuedCallsCount = okHttpClient.dispatcher().queuedCallsCount();
+        }
+        return metricsSnapshot;
+    }
+
+    /***
+     * 清空统计
+     */
+    public void reset() {
+        synchronized (mRecorders) {
+            mRecorders.clear();
+        }
+    }
+
+    private void finish(RequestMetrics requestMetrics, long bytesIn) {
+        requestMetrics.totalTime = toMillis(System.nanoTime() - requestMetrics.startNanos);
+        requestMetrics.bytesIn = bytesIn;
+        getRecorder(requestMetrics.endpoint).record(requestMetrics);
+        MetricsSink metricsSink = mMetricsSink;
+        if (null != metricsSink) {
+            metricsSink.onRequest(requestMetrics);
+        }
+    }
+
+    private EndpointRecorder getRecorder(String endpoint) {
+        synchronized (mRecorders) {
+            EndpointRecorder recorder = mRecorders.get(endpoint);
+            if (null == recorder) {
+                //路径中带id等变量时接口数会一直增长, 超过上限后合并到host
+                if (mRecorders.size() >= MAX_ENDPOINTS) {
+                    int index = endpoint.indexOf('/');
+                    endpoint = (index < 0 ? endpoint : endpoint.substring(0, index)) + "/*";
+                    recorder = mRecorders.get(endpoint);
+                }
+                if (null == recorder) {
+                    recorder = new EndpointRecorder(endpoint);
+                    mRecorders.put(endpoint, recorder);
+                }
+            }
+            return recorder;
+        }
+    }
+
+    private static String createEndpoint(HttpUrl url) {
+        return url.host() + url.encodedPath();
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /***
+     * 统计读取的字节数, 读完或关闭时结束计时
+     */
+    private class MetricsResponseBody extends ResponseBody {
+
+        private final ResponseBody mResponseBody;
+
+        private final RequestMetrics mRequestMetrics;
+
+        private BufferedSource mBufferedSource;
+
+        private long mBytesRead;
+
+        private boolean mFinished;
+
+        MetricsResponseBody(ResponseBody responseBody, RequestMetrics requestMetrics) {
+            mResponseBody = responseBody;
+            mRequestMetrics = requestMetrics;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return mResponseBody.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return mResponseBody.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            if (null == mBufferedSource) {
+                mBufferedSource = Okio.buffer(new ForwardingSource(mResponseBody.source()) {
+                    @Override
+                    public long read(Buffer sink, long byteCount) throws IOException {
+                        long bytesRead = super.read(sink, byteCount);
+                        if (bytesRead == -1) {
+                            finishOnce();
+                        } else {
+                            mBytesRead += bytesRead;
+                        }
+                        return bytesRead;
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        finishOnce();
+                        super.close();
+                    }
+                });
+            }
+            return mBufferedSource;
+        }
+
+        private void finishOnce() {
+            if (!mFinished) {
+                mFinished = true;
+                finish(mRequestMetrics, mBytesRead);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.library.network.metrics;
+
+/**
+ * 单个请求的耗时和流量, 时间单位毫秒, 未测量到的为-1
+ * Created by admin on 2016/12/21.
+ */
+public class RequestMetrics {
+
+    //请求tag(IHttpParams.getTag())
+    Object tag;
+    String method;
+    //接口(host + path, 不含参数)
+    String endpoint;
+    //DNS解析耗时
+    long dnsTime = -1;
+    //建立连接耗时(TCP + TLS), 复用连接时接近0
+    long connectTime = -1;
+    //是否是https连接
+    boolean tls;
+    //发出请求到收到响应头的耗时
+    long ttfb = -1;
+    //请求开始到响应体读完的总耗时
+    long totalTime = -1;
+    long bytesOut;
+    long bytesIn;
+    //Http状态码, 网络异常时为-1
+    int code = -1;
+    //是否直接从缓存返回
+    boolean fromCache;
+
+    //纳秒, 内部计时使用
+    long startNanos;
+    long dnsNanos;
+    long networkStartNanos;
+
+    public Object getTag() {
+        return tag;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getDnsTime() {
+        return dnsTime;
+    }
+
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    public boolean isTls() {
+        return tls;
+    }
+
+    public long getTtfb() {
+        return ttfb;
+    }
+
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    public boolean isSuccessful() {
+        return code >= 200 && code < 300;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics{" +
+                "tag=" + tag +
+                ", method='" + method + '\'' +
+                ", endpoint='" + endpoint + '\'' +
+                ", dnsTime=" + dnsTime +
+                ", connectTime=" + connectTime +
+                ", tls=" + tls +
+                ", ttfb=" + ttfb +
+                ", totalTime=" + totalTime +
+                ", bytesOut=" + bytesOut +
+                ", bytesIn=" + bytesIn +
+                ", code=" + code +
+                ", fromCache=" + fromCache +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.library.network.metrics;
+
+/**
+ * 内部替换了Request的tag时(合并请求, HttpFuture), 用它保存调用方的tag(IHttpParams.getTag()), 统计时取出
+ * 按对象本身比较, 每个实例是一个独立的tag
+ * Created by admin on 2016/12/21.
+ */
+public class TagHolder {
+
+    private final Object mTag;
+
+    public TagHolder(Object tag) {
+        this.mTag = tag;
+    }
+
+    /***
+     * 调用方的tag, 可以为null
+     *
+     * @return
+     */
+    public Object getTag() {
+        return mTag;
+    }
+}
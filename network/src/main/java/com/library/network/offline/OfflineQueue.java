@@ -0,0 +1,497 @@
+package com.library.network.offline;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.ConnectivityManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.library.base.db.SQLiteHelper;
+import com.library.network.HttpCode;
+import com.library.network.HttpTypeCallBackAdapter;
+import com.library.network.HttpUtils;
+import com.library.network.decoder.StringDecoder;
+import com.library.network.interfaces.IHttpCallBack;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.utils.HttpCallBackUtils;
+import com.library.utils.net.NetWorkUtils;
+import com.library.utils.security.Md5Utils;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+/**
+ * 离线请求队列(POST)
+ * 1.请求先写入数据库(SQLiteHelper)再发送, 成功后删除, 进程被杀也不会丢失
+ * 2.相同的请求只保存一次: tag是String时按tag去重, 否则按url + 参数去重
+ * 3.按加入顺序逐个发送; 网络失败或5xx时保留, 联网(CONNECTIVITY_ACTION)后继续
+ * 4.重发限速: 每个请求间隔mInterval, 每mBatchSize个请求暂停mBatchInterval, 联网后随机延迟开始, 避免大量客户端同时重发
+ * 只支持普通参数, 不支持文件
+ * 使用前需要先初始化SQLiteHelper
+ * Created by admin on 2016/12/27.
+ */
+public class OfflineQueue {
+
+    private static final MediaType FORM = MediaType.parse("application/x-www-form-urlencoded");
+
+    private static final String TABLE_NAME = "http_offline";
+    private static final String ID = "id";
+    private static final String DEDUP_KEY = "dedup_key";
+    private static final String TAG = "tag";
+    private static final String URL = "url";
+    private static final String BODY = "body";
+    private static final String ATTEMPT = "attempt";
+    private static final String CREATE_TIME = "create_time";
+
+    private static final String CREATE_TABLE_SQL = new StringBuffer()
+            .append("create table if not exists ")
+            .append(TABLE_NAME)
+            .append("(")
+            .append(ID).append(" integer primary key autoincrement,")
+            .append(DEDUP_KEY).append(" text unique,")
+            .append(TAG).append(" text,")
+            .append(URL).append(" text,")
+            .append(BODY).append(" text,")
+            .append(ATTEMPT).append(" integer,")
+            .append(CREATE_TIME).append(" integer")
+            .append(")").toString();
+
+    //两个请求之间的间隔(毫秒)
+    private volatile long mInterval = 200;
+    //每批请求数
+    private volatile int mBatchSize = 10;
+    //每批之间的间隔(毫秒)
+    private volatile long mBatchInterval = 2000;
+    //联网后开始重发前的最大随机延迟(毫秒)
+    private volatile long mMaxStartDelay = 3000;
+    //最多重发次数, 超过后丢弃
+    private volatile int mMaxAttempts = 20;
+
+    //失败后的等待时间(毫秒), 每次失败翻倍, 成功后重置
+    private static final long MIN_BACKOFF = 5 * 1000;
+    private static final long MAX_BACKOFF = 5 * 60 * 1000;
+
+    private Context mContext;
+    private boolean mInit;
+    private volatile OnReplayListener mOnReplayListener;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Random mRandom = new Random();
+    private ScheduledExecutorService mExecutor;
+
+    //当前进程中加入的请求, 发送时回调给调用方
+    private final Map<Long, Pending> mPendings = new HashMap<>();
+
+    //以下只在mExecutor中访问
+    private boolean mReplaying;
+    private int mSentCount;
+    private long mNextTime;
+    private long mBackoff = MIN_BACKOFF;
+
+    private final Runnable mReplayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            replayNext();
+        }
+    };
+
+    private final BroadcastReceiver mConnectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (!isConnected()) {
+                return;
+            }
+            mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mBackoff = MIN_BACKOFF;
+                    replayNext();
+                }
+            }, mRandom.nextInt((int) Math.max(1, mMaxStartDelay)), TimeUnit.MILLISECONDS);
+        }
+    };
+
+    private OfflineQueue() {
+
+    }
+
+    private static class OfflineQueueInstances {
+        private static OfflineQueue sOfflineQueue = new OfflineQueue();
+    }
+
+    public static OfflineQueue getInstances() {
+        return OfflineQueueInstances.sOfflineQueue;
+    }
+
+    /***
+     * 初始化, 监听网络变化, 有网络时重发上次未完成的请求
+     *
+     * @param context
+     */
+    public synchronized void init(Context context) {
+        if (mInit) {
+            return;
+        }
+        mInit = true;
+        mContext = context.getApplicationContext();
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        SQLiteHelper.getInstances().getSQLiteDatabase().execSQL(CREATE_TABLE_SQL);
+        mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    public void setOnReplayListener(OnReplayListener onReplayListener) {
+        mOnReplayListener = onReplayListener;
+    }
+
+    /***
+     * 设置重发速度
+     *
+     * @param interval      两个请求之间的间隔(毫秒)
+     * @param batchSize     每批请求数
+     * @param batchInterval 每批之间的间隔(毫秒)
+     */
+    public void setRateLimit(long interval, int batchSize, long batchInterval) {
+        mInterval = Math.max(0, interval);
+        mBatchSize = Math.max(1, batchSize);
+        mBatchInterval = Math.max(0, batchInterval);
+    }
+
+    public void setMaxStartDelay(long maxStartDelay) {
+        mMaxStartDelay = Math.max(0, maxStartDelay);
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        mMaxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /***
+     * post  异步请求, 先保存再发送
+     * 网络不可用时httpCallBack收到OFFLINE_QUEUED, 之后的结果见OnReplayListener
+     *
+     * @param httpParams
+     * @param httpCallBack
+     */
+    public void post(final IHttpParams httpParams, final IHttpCallBack httpCallBack) {
+        checkInit();
+        HttpUtils.getInstances().checkParams(httpParams);
+        for (Object value : httpParams.getParam().values()) {
+            if (value instanceof File) {
+                throw new IllegalArgumentException("offline request not support file");
+            }
+        }
+        final String body = httpParams.getParamString();
+        final Pending pending = new Pending(httpParams, httpCallBack);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long id = insert(httpParams, body);
+                if (id == -1) {
+                    //相同的请求已在队列中
+                    sendQueuedCallBack(pending);
+                    return;
+                }
+                synchronized (mPendings) {
+                    mPendings.put(id, pending);
+                }
+                if (!isConnected()) {
+                    detach(id);
+                    return;
+                }
+                replayNext();
+            }
+        });
+    }
+
+    /***
+     * 队列中等待发送的请求数
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        checkInit();
+        Cursor cursor = SQLiteHelper.getInstances().getSQLiteDatabase().rawQuery("select count(*) from " + TABLE_NAME, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void schedule(long delay) {
+        if (null != mExecutor) {
+            mExecutor.schedule(mReplayRunnable, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /***
+     * 按顺序发送下一个请求, 在mExecutor中执行
+     */
+    private void replayNext() {
+        if (mReplaying || !isConnected()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now < mNextTime) {
+            schedule(mNextTime - now);
+            return;
+        }
+        Cursor cursor = SQLiteHelper.getInstances().query(TABLE_NAME, null, null, null, null, null, ID + " asc", "1");
+        if (null == cursor) {
+            return;
+        }
+        Record record;
+        try {
+            if (!cursor.moveToFirst()) {
+                mSentCount = 0;
+                return;
+            }
+            record = new Record();
+            record.id = cursor.getLong(cursor.getColumnIndex(ID));
+            record.tag = cursor.getString(cursor.getColumnIndex(TAG));
+            record.url = cursor.getString(cursor.getColumnIndex(URL));
+            record.body = cursor.getString(cursor.getColumnIndex(BODY));
+            record.attempt = cursor.getInt(cursor.getColumnIndex(ATTEMPT));
+        } finally {
+            cursor.close();
+        }
+        mReplaying = true;
+        Pending pending;
+        synchronized (mPendings) {
+            pending = mPendings.get(record.id);
+        }
+        IHttpParams httpParams;
+        if (null != pending) {
+            httpParams = pending.httpParams;
+        } else {
+            httpParams = new OfflineParams();
+            httpParams.setHttpUrl(record.url);
+            httpParams.setTag(record.tag);
+            httpParams.setAsyncBack(true);
+        }
+        try {
+            HttpUtils.getInstances().postAsync(httpParams, RequestBody.create(FORM, null == record.body ? "" : record.body),
+                    StringDecoder.getInstances(), new ReplayCallBack(record, pending));
+        } catch (RuntimeException e) {
+            //url为空或无效, 请求未发出, 丢弃该条并继续重发后面的
+            synchronized (mPendings) {
+                mPendings.remove(record.id);
+            }
+            onReplayFinish(record, HttpCode.INVALID_PARAMS, e.getMessage(), false);
+        }
+    }
+
+    /***
+     * 请求结束, 在mExecutor中执行
+     *
+     * @param record
+     * @param code      成功时为200
+     * @param result    成功时为响应体, 失败时为错误信息
+     * @param delivered 是否已回调给调用方
+     */
+    private void onReplayFinish(Record record, int code, String result, boolean delivered) {
+        mReplaying = false;
+        boolean success = code >= 200 && code < 300;
+        if (!success && shouldKeep(record, code)) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(ATTEMPT, record.attempt + 1);
+            SQLiteHelper.getInstances().update(TABLE_NAME, contentValues, ID + "=?", new String[]{String.valueOf(record.id)});
+            //暂停重发, 等待联网或退避时间后继续; 排在后面的调用方不再等待
+            detachAll();
+            schedule(mBackoff);
+            mBackoff = Math.min(mBackoff * 2, MAX_BACKOFF);
+            return;
+        }
+        SQLiteHelper.getInstances().delete(TABLE_NAME, ID + "=?", new String[]{String.valueOf(record.id)});
+        OnReplayListener onReplayListener = mOnReplayListener;
+        if (!delivered && null != onReplayListener) {
+            if (success) {
+                onReplayListener.onSuccess(record.tag, record.url, result);
+            } else {
+                onReplayListener.onFail(record.tag, record.url, code, result);
+            }
+        }
+        if (success) {
+            mBackoff = MIN_BACKOFF;
+        }
+        mSentCount++;
+        long delay = mSentCount % mBatchSize == 0 ? mBatchInterval : mInterval;
+        mNextTime = System.currentTimeMillis() + delay;
+        schedule(delay);
+    }
+
+    /***
+     * 网络失败、熔断或5xx时保留, 等待重发
+     */
+    private boolean shouldKeep(Record record, int code) {
+        return (code == HttpCode.IO_ERROR || code == HttpCode.CIRCUIT_OPEN || code >= HttpURLConnection.HTTP_INTERNAL_ERROR)
+                && record.attempt + 1 < mMaxAttempts;
+    }
+
+    private long insert(IHttpParams httpParams, String body) {
+        String tag = httpParams.getTag() instanceof String ? (String) httpParams.getTag() : null;
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DEDUP_KEY, null != tag ? tag : Md5Utils.md5(httpParams.getHttpUrl() + "?" + body));
+        contentValues.put(TAG, tag);
+        contentValues.put(URL, httpParams.getHttpUrl());
+        contentValues.put(BODY, body);
+        contentValues.put(ATTEMPT, 0);
+        contentValues.put(CREATE_TIME, System.currentTimeMillis());
+        return SQLiteHelper.getInstances().getSQLiteDatabase().insertWithOnConflict(TABLE_NAME, null, contentValues, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /***
+     * 调用方不再等待结果, 回调OFFLINE_QUEUED
+     *
+     * @param id
+     */
+    private void detach(long id) {
+        Pending pending;
+        synchronized (mPendings) {
+            pending = mPendings.remove(id);
+        }
+        if (null != pending) {
+            sendQueuedCallBack(pending);
+        }
+    }
+
+    private void detachAll() {
+        Pending[] pendings;
+        synchronized (mPendings) {
+            pendings = mPendings.values().toArray(new Pending[mPendings.size()]);
+            mPendings.clear();
+        }
+        for (Pending pending : pendings) {
+            sendQueuedCallBack(pending);
+        }
+    }
+
+    private void sendQueuedCallBack(final Pending pending) {
+        if (null == pending.httpCallBack) {
+            return;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                HttpCallBackUtils.onFail(pending.httpCallBack, pending.httpParams, HttpCode.OFFLINE_QUEUED, "request is queued offline");
+                pending.httpCallBack.onAfter(pending.httpParams);
+            }
+        });
+    }
+
+    private boolean isConnected() {
+        return new NetWorkUtils().isNetworkConnected(mContext);
+    }
+
+    private void checkInit() {
+        if (!mInit) {
+            throw new IllegalStateException("user before must execute init method");
+        }
+    }
+
+    private static class Record {
+        long id;
+        String tag;
+        String url;
+        String body;
+        int attempt;
+    }
+
+    private static class Pending {
+        final IHttpParams httpParams;
+        final IHttpCallBack httpCallBack;
+
+        Pending(IHttpParams httpParams, IHttpCallBack httpCallBack) {
+            this.httpParams = httpParams;
+            this.httpCallBack = httpCallBack;
+        }
+    }
+
+    private static class OfflineParams extends IHttpParams {
+    }
+
+    /***
+     * 当前进程加入的请求回调给调用方, 其余回调给OnReplayListener
+     */
+    private class ReplayCallBack extends HttpTypeCallBackAdapter<String> {
+
+        private final Record mRecord;
+        private Pending mPending;
+
+        ReplayCallBack(Record record, Pending pending) {
+            this.mRecord = record;
+            this.mPending = pending;
+        }
+
+        @Override
+        public void onBefore(IHttpParams httpParams) {
+            if (null != mPending && null != mPending.httpCallBack) {
+                mPending.httpCallBack.onBefore(httpParams);
+            }
+        }
+
+        @Override
+        public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+            if (null != mPending && null != mPending.httpCallBack) {
+                mPending.httpCallBack.onProgress(httpParams, bytesRead, contentLength, finish);
+            }
+        }
+
+        @Override
+        public void onAfter(IHttpParams httpParams) {
+            if (null != mPending && null != mPending.httpCallBack) {
+                mPending.httpCallBack.onAfter(httpParams);
+            }
+        }
+
+        @Override
+        public void onSuccess(final IHttpParams httpParams, final String result) {
+            final boolean delivered = null != takePending();
+            if (delivered && null != mPending.httpCallBack) {
+                mPending.httpCallBack.onSuccess(httpParams, result);
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    onReplayFinish(mRecord, HttpURLConnection.HTTP_OK, result, delivered);
+                }
+            });
+        }
+
+        @Override
+        public void onFail(final IHttpParams httpParams, final int code, final String message) {
+            final boolean delivered = null != takePending();
+            if (delivered && null != mPending.httpCallBack) {
+                HttpCallBackUtils.onFail(mPending.httpCallBack, httpParams, shouldKeep(mRecord, code) ? HttpCode.OFFLINE_QUEUED : code, message);
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    onReplayFinish(mRecord, code, message, delivered);
+                }
+            });
+        }
+
+        /***
+         * 结果只回调给调用方一次, 之后由OnReplayListener处理
+         */
+        private Pending takePending() {
+            synchronized (mPendings) {
+                return mPendings.remove(mRecord.id);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.library.network.offline;
+
+/**
+ * 离线请求重发结果
+ * 调用方的IHttpCallBack只收到一次OFFLINE_QUEUED, 之后的结果(包括重启后的重发)通过此接口回调, 在子线程执行
+ * Created by admin on 2016/12/27.
+ */
+public interface OnReplayListener {
+
+    void onSuccess(String tag, String url, String body);
+
+    /***
+     * 重发失败, 请求已从队列移除
+     *
+     * @param tag
+     * @param url
+     * @param code    Http状态码, 小于0时见{@link com.library.network.HttpCode}
+     * @param message
+     */
+    void onFail(String tag, String url, int code, String message);
+}
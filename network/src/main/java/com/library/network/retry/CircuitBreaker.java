@@ -0,0 +1,93 @@
+package com.library.network.retry;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按host熔断
+ * 1.连续失败(网络异常或5xx)达到阈值后熔断, 熔断期间请求直接失败
+ * 2.熔断时间到后放行一个探测请求, 成功则恢复, 失败则继续熔断, 探测请求熔断时间内没有结果时再放行一个
+ * Created by admin on 2016/12/19.
+ */
+public class CircuitBreaker {
+
+    private static final int STATE_CLOSED = 0;
+    private static final int STATE_OPEN = 1;
+    private static final int STATE_HALF_OPEN = 2;
+
+    //连续失败多少次后熔断
+    private int mFailureThreshold = 5;
+    //熔断时间(毫秒)
+    private long mOpenDuration = 30 * 1000;
+
+    private final Map<String, HostState> mHostStates = new HashMap<>();
+
+    public synchronized void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold < 1: " + failureThreshold);
+        }
+        this.mFailureThreshold = failureThreshold;
+    }
+
+    public synchronized void setOpenDuration(long openDuration) {
+        this.mOpenDuration = openDuration;
+    }
+
+    /***
+     * 请求前调用, 返回false时请求直接失败
+     *
+     * @param host
+     * @return
+     */
+    public synchronized boolean allowRequest(String host) {
+        HostState hostState = mHostStates.get(host);
+        if (null == hostState || hostState.state == STATE_CLOSED) {
+            return true;
+        }
+        //探测请求被取消, 排队中被丢弃或命中缓存时不会回调onSuccess/onFailure, 超时后重新放行一个探测请求
+        if (SystemClock.elapsedRealtime() - hostState.openTime >= mOpenDuration) {
+            //放行一个探测请求
+            hostState.state = STATE_HALF_OPEN;
+            hostState.openTime = SystemClock.elapsedRealtime();
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess(String host) {
+        mHostStates.remove(host);
+    }
+
+    public synchronized void onFailure(String host) {
+        HostState hostState = mHostStates.get(host);
+        if (null == hostState) {
+            hostState = new HostState();
+            mHostStates.put(host, hostState);
+        }
+        hostState.failureCount++;
+        if (hostState.state == STATE_HALF_OPEN || hostState.failureCount >= mFailureThreshold) {
+            hostState.state = STATE_OPEN;
+            hostState.openTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /***
+     * host是否处于熔断中
+     *
+     * @param host
+     * @return
+     */
+    public synchronized boolean isOpen(String host) {
+        HostState hostState = mHostStates.get(host);
+        return null != hostState && hostState.state != STATE_CLOSED;
+    }
+
+    private static class HostState {
+        int state = STATE_CLOSED;
+        int failureCount;
+        //进入熔断或放行探测请求的时间
+        long openTime;
+    }
+}
@@ -0,0 +1,114 @@
+package com.library.network.retry;
+
+import java.net.HttpURLConnection;
+import java.util.Random;
+
+/**
+ * 重试策略: 指数退避 + 随机抖动
+ * 默认只重试幂等请求(GET、HEAD、PUT、DELETE、OPTIONS), POST需要设置retryNonIdempotent
+ * Created by admin on 2016/12/19.
+ */
+public class RetryPolicy {
+
+    //不重试
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+    private static final Random sRandom = new Random();
+
+    //最大重试次数
+    private int maxRetries;
+    //第一次重试的基础等待时间(毫秒), 之后每次翻倍
+    private long baseDelay;
+    //最大等待时间(毫秒)
+    private long maxDelay;
+    //随机抖动比例(0~1), 等待时间在[delay * (1 - jitter), delay]之间, 避免大量客户端同时重试
+    private float jitter = 0.5f;
+    //是否重试非幂等请求(POST)
+    private boolean retryNonIdempotent;
+
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public float getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(float jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be in [0, 1]: " + jitter);
+        }
+        this.jitter = jitter;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+
+    /***
+     * 是否需要重试
+     *
+     * @param method  请求方法
+     * @param code    Http状态码, 网络异常时小于0
+     * @param attempt 已重试次数
+     * @return
+     */
+    public boolean shouldRetry(String method, int code, int attempt) {
+        if (attempt >= maxRetries) {
+            return false;
+        }
+        if (!retryNonIdempotent && !isIdempotent(method)) {
+            return false;
+        }
+        return code < 0 || isRetryableCode(code);
+    }
+
+    /***
+     * 第attempt次重试前的等待时间
+     *
+     * @param attempt 已重试次数, 从0开始
+     * @return
+     */
+    public long getDelay(int attempt) {
+        long delay = baseDelay << Math.min(attempt, 30);
+        if (delay <= 0 || delay > maxDelay) {
+            delay = maxDelay;
+        }
+        return (long) (delay * (1 - jitter * sRandom.nextFloat()));
+    }
+
+    private static boolean isIdempotent(String method) {
+        return "GET".equals(method)
+                || "HEAD".equals(method)
+                || "PUT".equals(method)
+                || "DELETE".equals(method)
+                || "OPTIONS".equals(method);
+    }
+
+    private static boolean isRetryableCode(int code) {
+        return code == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                || code == 429
+                || code == HttpURLConnection.HTTP_INTERNAL_ERROR
+                || code == HttpURLConnection.HTTP_BAD_GATEWAY
+                || code == HttpURLConnection.HTTP_UNAVAILABLE
+                || code == HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
+    }
+}
@@ -0,0 +1,82 @@
+package com.library.network.retry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟执行重试, 等待期间不占用OkHttp的线程
+ * 等待中的重试可以按tag取消
+ * Created by admin on 2016/12/19.
+ */
+public class RetryScheduler {
+
+    private ScheduledExecutorService mScheduledExecutorService;
+
+    private final List<PendingRetry> mPendingRetries = new ArrayList<>();
+
+    /***
+     * 延迟重试
+     *
+     * @param tag      请求tag, 用于取消
+     * @param delay    等待时间(毫秒)
+     * @param retry    重试
+     * @param onCancel 等待期间被取消时调用
+     */
+    public synchronized void schedule(Object tag, long delay, final Runnable retry, Runnable onCancel) {
+        if (null == mScheduledExecutorService) {
+            mScheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        }
+        final PendingRetry pendingRetry = new PendingRetry(tag, onCancel);
+        mPendingRetries.add(pendingRetry);
+        pendingRetry.future = mScheduledExecutorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RetryScheduler.this) {
+                    if (!mPendingRetries.remove(pendingRetry)) {
+                        return;
+                    }
+                }
+                retry.run();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * 取消等待中的重试
+     *
+     * @param tag
+     */
+    public void cancel(Object tag) {
+        List<PendingRetry> canceled = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PendingRetry> iterator = mPendingRetries.iterator();
+            while (iterator.hasNext()) {
+                PendingRetry pendingRetry = iterator.next();
+                if (tag.equals(pendingRetry.tag)) {
+                    iterator.remove();
+                    pendingRetry.future.cancel(false);
+                    canceled.add(pendingRetry);
+                }
+            }
+        }
+        for (PendingRetry pendingRetry : canceled) {
+            pendingRetry.onCancel.run();
+        }
+    }
+
+    private static class PendingRetry {
+        final Object tag;
+        final Runnable onCancel;
+        ScheduledFuture<?> future;
+
+        PendingRetry(Object tag, Runnable onCancel) {
+            this.tag = tag;
+            this.onCancel = onCancel;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.library.network.upload;
+
+/**
+ * 分片上传回调(在上传线程中回调)
+ * Created by admin on 2016/12/16.
+ */
+public interface ChunkUploadListener {
+
+    void onProgress(long bytesWritten, long contentLength, boolean finish);
+
+    void onSuccess(String body);
+
+    void onFail(int code, String message);
+}
@@ -0,0 +1,263 @@
+package com.library.network.upload;
+
+import com.library.base.thread.PriorityRunnable;
+import com.library.base.thread.ThreadManager;
+import com.library.network.HttpCode;
+import com.library.network.interfaces.IHttpParams;
+import com.library.network.utils.HttpFileUtils;
+import com.library.utils.security.Md5Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * 分片上传
+ * 参数中的每个文件按固定大小分片, 每片单独请求, 失败时只重试当前分片
+ * 每片请求除了原有的普通参数, 还带有uploadId、fileName、fileSize、chunkIndex、chunkCount, 由服务器合并
+ * 失败或取消后再次调用start, 从未完成的分片继续上传
+ * Created by admin on 2016/12/16.
+ */
+public class ChunkUploadTask implements FileChunkRequestBody.OnWriteListener {
+
+    public static final String PARAM_UPLOAD_ID = "uploadId";
+    public static final String PARAM_FILE_NAME = "fileName";
+    public static final String PARAM_FILE_SIZE = "fileSize";
+    public static final String PARAM_CHUNK_INDEX = "chunkIndex";
+    public static final String PARAM_CHUNK_COUNT = "chunkCount";
+
+    //重试间隔(毫秒), 第n次重试等待n倍
+    private static final long RETRY_DELAY = 1000;
+
+    private OkHttpClient mOkHttpClient;
+    private IHttpParams mHttpParams;
+    private ChunkUploadListener mChunkUploadListener;
+
+    private List<String> mFileKeys = new ArrayList<>();
+    private List<File> mFiles = new ArrayList<>();
+    private long mContentLength;
+
+    //上传位置, 失败后从这里继续
+    private int mFileIndex;
+    private int mChunkIndex;
+    //已完成分片的字节数
+    private long mCompletedLength;
+    //当前分片已写入的字节数
+    private long mChunkWritten;
+
+    private Call mCall;
+    private volatile boolean mCanceled;
+    private boolean mRunning;
+
+    public ChunkUploadTask(OkHttpClient okHttpClient, IHttpParams httpParams, ChunkUploadListener chunkUploadListener) {
+        this.mOkHttpClient = okHttpClient;
+        this.mHttpParams = httpParams;
+        this.mChunkUploadListener = chunkUploadListener;
+        if (null != httpParams.getParam()) {
+            for (Map.Entry<String, Object> map : httpParams.getParam().entrySet()) {
+                if (map.getValue() instanceof File && ((File) map.getValue()).exists()) {
+                    mFileKeys.add(map.getKey());
+                    mFiles.add((File) map.getValue());
+                    mContentLength += ((File) map.getValue()).length();
+                }
+            }
+        }
+    }
+
+    /***
+     * 开始上传, 在ThreadManager的线程池中执行
+     * 每片都是同步请求, 不能占用OkHttp Dispatcher的线程, 否则会挤占异步请求
+     */
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mCanceled = false;
+        ThreadManager.getInstances().execute(new PriorityRunnable() {
+            @Override
+            public void run() {
+                upload();
+            }
+        });
+    }
+
+    /***
+     * 取消上传, 已完成的分片不会重新上传
+     */
+    public void cancel() {
+        mCanceled = true;
+        synchronized (this) {
+            if (null != mCall) {
+                mCall.cancel();
+            }
+        }
+    }
+
+    private void upload() {
+        if (mFiles.isEmpty()) {
+            finish();
+            mChunkUploadListener.onFail(HttpCode.IO_ERROR, "no file to upload");
+            return;
+        }
+        String body = null;
+        for (; mFileIndex < mFiles.size(); mFileIndex++, mChunkIndex = 0) {
+            File file = mFiles.get(mFileIndex);
+            int chunkSize = Math.max(1, mHttpParams.getUploadChunkSize());
+            int chunkCount = (int) Math.max(1, (file.length() + chunkSize - 1) / chunkSize);
+            String uploadId = Md5Utils.md5(file.getAbsolutePath() + file.length() + file.lastModified());
+            for (; mChunkIndex < chunkCount; mChunkIndex++) {
+                long offset = (long) mChunkIndex * chunkSize;
+                long length = Math.min(chunkSize, file.length() - offset);
+                Request request = createChunkRequest(mFileKeys.get(mFileIndex), file, uploadId, offset, length, chunkCount);
+                int code = HttpCode.IO_ERROR;
+                String error = null;
+                body = null;
+                for (int i = 0; i <= mHttpParams.getUploadRetryCount(); i++) {
+                    if (i > 0 && !sleep(RETRY_DELAY * i)) {
+                        break;
+                    }
+                    mChunkWritten = 0;
+                    try {
+                        body = execute(request);
+                        break;
+                    } catch (HttpStatusException e) {
+                        code = e.code;
+                        error = e.getMessage();
+                        if (!isRetryable(code)) {
+                            break;
+                        }
+                    } catch (IOException e) {
+                        code = HttpCode.IO_ERROR;
+                        error = e.getMessage();
+                    }
+                    if (mCanceled) {
+                        break;
+                    }
+                }
+                if (mCanceled) {
+                    finish();
+                    mChunkUploadListener.onFail(HttpCode.CANCEL, "request is cancel");
+                    return;
+                }
+                if (null == body) {
+                    finish();
+                    mChunkUploadListener.onFail(code, error);
+                    return;
+                }
+                mCompletedLength += length;
+                mChunkWritten = 0;
+            }
+        }
+        finish();
+        mChunkUploadListener.onProgress(mContentLength, mContentLength, true);
+        mChunkUploadListener.onSuccess(body);
+    }
+
+    private String execute(Request request) throws IOException {
+        Call call;
+        synchronized (this) {
+            call = mOkHttpClient.newCall(request);
+            mCall = call;
+            if (mCanceled) {
+                call.cancel();
+            }
+        }
+        Response response;
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            if (call.isCanceled()) {
+                //通过HttpUtils.cancel(tag)取消
+                mCanceled = true;
+            }
+            throw e;
+        }
+        try {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.code(), response.message());
+            }
+            return response.body().string();
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private Request createChunkRequest(String fileKey, File file, String uploadId, long offset, long length, int chunkCount) {
+        MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        for (Map.Entry<String, Object> map : mHttpParams.getParam().entrySet()) {
+            if (null == map || map.getValue() instanceof File) {
+                continue;
+            }
+            builder.addFormDataPart(map.getKey(), map.getValue().toString());
+        }
+        builder.addFormDataPart(PARAM_UPLOAD_ID, uploadId);
+        builder.addFormDataPart(PARAM_FILE_NAME, file.getName());
+        builder.addFormDataPart(PARAM_FILE_SIZE, String.valueOf(file.length()));
+        builder.addFormDataPart(PARAM_CHUNK_INDEX, String.valueOf(mChunkIndex));
+        builder.addFormDataPart(PARAM_CHUNK_COUNT, String.valueOf(chunkCount));
+        MediaType mediaType = MediaType.parse(HttpFileUtils.guessMimeType(file.getName()));
+        builder.addFormDataPart(fileKey, file.getName(), new FileChunkRequestBody(mediaType, file, offset, length, this));
+        Request.Builder b = new Request.Builder();
+        b.url(mHttpParams.getHttpUrl());
+        if (null != mHttpParams.getTag()) {
+            b.tag(mHttpParams.getTag());
+        }
+        b.post(builder.build());
+        return b.build();
+    }
+
+    @Override
+    public void onWrite(long byteCount) {
+        mChunkWritten += byteCount;
+        mChunkUploadListener.onProgress(mCompletedLength + mChunkWritten, mContentLength, false);
+    }
+
+    private synchronized void finish() {
+        mRunning = false;
+        mCall = null;
+    }
+
+    /***
+     * 服务器返回非2xx
+     */
+    private static class HttpStatusException extends IOException {
+
+        final int code;
+
+        HttpStatusException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    /***
+     * 只重试服务器暂时不可用的情况, 其余4xx重试也不会成功
+     */
+    private static boolean isRetryable(int code) {
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                || code == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                || code == 429;
+    }
+
+    private boolean sleep(long time) {
+        try {
+            Thread.sleep(time);
+            return !mCanceled;
+        } catch (InterruptedException e) {
+            //恢复中断状态, 交给线程池处理
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
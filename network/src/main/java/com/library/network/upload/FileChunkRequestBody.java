@@ -0,0 +1,81 @@
+package com.library.network.upload;
+
+import com.library.utils.file.StreamUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * 文件的一段, 从文件的指定位置边读边写, 不把整段数据读入内存
+ * Created by admin on 2016/12/16.
+ */
+class FileChunkRequestBody extends RequestBody {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private MediaType mMediaType;
+    private File mFile;
+    private long mOffset;
+    private long mLength;
+    private OnWriteListener mOnWriteListener;
+
+    FileChunkRequestBody(MediaType mediaType, File file, long offset, long length, OnWriteListener onWriteListener) {
+        this.mMediaType = mediaType;
+        this.mFile = file;
+        this.mOffset = offset;
+        this.mLength = length;
+        this.mOnWriteListener = onWriteListener;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return mMediaType;
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return mLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        FileInputStream fis = null;
+        FileChannel fileChannel = null;
+        try {
+            fis = new FileInputStream(mFile);
+            fileChannel = fis.getChannel();
+            byte[] buf = new byte[BUFFER_SIZE];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
+            long position = mOffset;
+            long remaining = mLength;
+            while (remaining > 0) {
+                byteBuffer.clear();
+                byteBuffer.limit((int) Math.min(buf.length, remaining));
+                int len = fileChannel.read(byteBuffer, position);
+                if (len == -1) {
+                    throw new IOException("unexpected end of file");
+                }
+                sink.write(buf, 0, len);
+                position += len;
+                remaining -= len;
+                if (null != mOnWriteListener) {
+                    mOnWriteListener.onWrite(len);
+                }
+            }
+        } finally {
+            StreamUtils.close(fileChannel);
+            StreamUtils.close(fis);
+        }
+    }
+
+    interface OnWriteListener {
+        void onWrite(long byteCount);
+    }
+}
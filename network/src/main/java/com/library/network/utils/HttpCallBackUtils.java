@@ -0,0 +1,24 @@
+package com.library.network.utils;
+
+import com.library.network.interfaces.IHttpBaseCallBack;
+import com.library.network.interfaces.IHttpCodeCallBack;
+import com.library.network.interfaces.IHttpParams;
+
+/**
+ * 失败回调分发, 实现了IHttpCodeCallBack的回调带错误码
+ * Created by admin on 2016/12/19.
+ */
+public class HttpCallBackUtils {
+
+    private HttpCallBackUtils() {
+
+    }
+
+    public static void onFail(IHttpBaseCallBack httpCallBack, IHttpParams httpParams, int code, String message) {
+        if (httpCallBack instanceof IHttpCodeCallBack) {
+            ((IHttpCodeCallBack) httpCallBack).onFail(httpParams, code, message);
+        } else {
+            httpCallBack.onFail(httpParams, message);
+        }
+    }
+}
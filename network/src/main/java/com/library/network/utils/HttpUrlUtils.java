@@ -0,0 +1,71 @@
+package com.library.network.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+
+/**
+ * 拼接请求参数, 参数名和参数值都会按UTF-8编码
+ * Created by admin on 2016/12/22.
+ */
+public class HttpUrlUtils {
+
+    /***
+     * 把参数拼接到url上, 原url中已有的参数会保留
+     *
+     * @param url
+     * @param params 值为null的参数忽略
+     * @return
+     */
+    public static HttpUrl buildUrl(String url, Map<String, Object> params) {
+        HttpUrl httpUrl = null == url ? null : HttpUrl.parse(url);
+        if (null == httpUrl) {
+            throw new IllegalArgumentException("unexpected url: " + url);
+        }
+        if (null == params || params.isEmpty()) {
+            return httpUrl;
+        }
+        HttpUrl.Builder builder = httpUrl.newBuilder();
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (null == entry.getKey() || null == entry.getValue()) {
+                continue;
+            }
+            builder.addQueryParameter(entry.getKey(), entry.getValue().toString());
+        }
+        return builder.build();
+    }
+
+    /***
+     * 拼接成 name=value&name=value 格式(application/x-www-form-urlencoded)
+     *
+     * @param params 值为null的参数忽略
+     * @return
+     */
+    public static String encodeParams(Map<String, Object> params) {
+        if (null == params || params.isEmpty()) {
+            return "";
+        }
+        StringBuilder stringBuilder = new StringBuilder(params.size() * 16);
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            if (null == entry.getKey() || null == entry.getValue()) {
+                continue;
+            }
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append('&');
+            }
+            stringBuilder.append(encode(entry.getKey())).append('=').append(encode(entry.getValue().toString()));
+        }
+        return stringBuilder.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            //UTF-8一定支持
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.library.network;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 每种配置共用一个OkHttpClient, 以及和每次newBuilder的分配对比
+ * Created by admin on 2017/1/12.
+ */
+public class ClientProfileTest {
+
+    private static final int CALLS = 2000;
+
+    private final Request mRequest = new Request.Builder().url("http://localhost/file").build();
+
+    @Test
+    public void profilesShareConnectionPoolAndDispatcher() {
+        OkHttpClient api = HttpUtils.getInstances().getClient(ClientProfile.API);
+        for (ClientProfile clientProfile : ClientProfile.values()) {
+            OkHttpClient okHttpClient = HttpUtils.getInstances().getClient(clientProfile);
+            assertSame(okHttpClient, HttpUtils.getInstances().getClient(clientProfile));
+            assertSame(api.connectionPool(), okHttpClient.connectionPool());
+            assertSame(api.dispatcher(), okHttpClient.dispatcher());
+            assertEquals(api.interceptors(), okHttpClient.interceptors());
+            assertEquals(TimeUnit.SECONDS.toMillis(clientProfile.readTimeout), okHttpClient.readTimeoutMillis());
+        }
+    }
+
+    @Test
+    public void benchmarkAllocationPerCall() {
+        final OkHttpClient base = HttpUtils.getInstances().getClient(ClientProfile.API);
+        Runnable before = new Runnable() {
+            @Override
+            public void run() {
+                //原来的download: 每次newBuilder并添加进度拦截器
+                base.newBuilder()
+                        .readTimeout(600, TimeUnit.SECONDS)
+                        .writeTimeout(600, TimeUnit.SECONDS)
+                        .addNetworkInterceptor(new Interceptor() {
+                            @Override
+                            public Response intercept(Chain chain) throws IOException {
+                                return chain.proceed(chain.request());
+                            }
+                        })
+                        .build()
+                        .newCall(mRequest);
+            }
+        };
+        Runnable after = new Runnable() {
+            @Override
+            public void run() {
+                HttpUtils.getInstances().getClient(ClientProfile.DOWNLOAD).newCall(mRequest);
+            }
+        };
+        long beforeBytes = allocatedPerCall(before);
+        long afterBytes = allocatedPerCall(after);
+        System.out.println("ClientProfile allocation per call: newBuilder " + beforeBytes + " bytes, shared " + afterBytes + " bytes");
+        assertTrue(afterBytes < beforeBytes);
+    }
+
+    /***
+     * 预热后平均每次调用在当前线程分配的字节数
+     */
+    private static long allocatedPerCall(Runnable runnable) {
+        for (int i = 0; i < CALLS; i++) {
+            runnable.run();
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; i++) {
+            runnable.run();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - start) / CALLS;
+    }
+}
@@ -0,0 +1,209 @@
+package com.library.network.batch;
+
+import com.library.network.interfaces.IHttpCallBack;
+import com.library.network.interfaces.IHttpParams;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HttpBatcher合并请求, 用本地MockWebServer统计实际发出的请求数
+ * 单元测试中android.jar只返回默认值, Handler不会执行, 所以用flush和最大数量触发发送, 回调都在请求线程
+ * Created by admin on 2017/1/12.
+ */
+public class HttpBatcherTest {
+
+    private static final int REQUEST_COUNT = 10;
+
+    private MockWebServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void mergesRequestsIntoOneRoundTrip() throws Exception {
+        mServer.setDispatcher(new EchoDispatcher());
+        HttpBatcher httpBatcher = new HttpBatcher(mServer.url("/batch").toString(), new LineBatchEnvelope());
+        httpBatcher.setWindow(TimeUnit.MINUTES.toMillis(1));
+        httpBatcher.setMaxBatchSize(REQUEST_COUNT + 1);
+
+        RecordingCallBack callBack = new RecordingCallBack(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            httpBatcher.get(params(i), callBack);
+        }
+        httpBatcher.flush();
+
+        assertTrue(callBack.await());
+        //单独请求需要REQUEST_COUNT次往返, 合并后只有一次
+        assertEquals(1, mServer.getRequestCount());
+        RecordedRequest recordedRequest = mServer.takeRequest();
+        assertEquals("POST", recordedRequest.getMethod());
+        assertEquals(REQUEST_COUNT, recordedRequest.getBody().readUtf8().split("\n").length);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            assertEquals("body" + i, callBack.mBodies.get(i));
+        }
+        assertTrue(callBack.mFails.isEmpty());
+    }
+
+    @Test
+    public void splitsByMaxBatchSize() throws Exception {
+        //多个合并请求同时发出, 到达顺序不确定, 按请求内容响应
+        mServer.setDispatcher(new EchoDispatcher());
+        HttpBatcher httpBatcher = new HttpBatcher(mServer.url("/batch").toString(), new LineBatchEnvelope());
+        httpBatcher.setWindow(TimeUnit.MINUTES.toMillis(1));
+        httpBatcher.setMaxBatchSize(4);
+
+        RecordingCallBack callBack = new RecordingCallBack(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            httpBatcher.get(params(i), callBack);
+        }
+        //前8个达到上限时已发出, 剩下2个等窗口结束
+        httpBatcher.flush();
+
+        assertTrue(callBack.await());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(REQUEST_COUNT, callBack.mBodies.size());
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            assertEquals("body" + i, callBack.mBodies.get(i));
+        }
+    }
+
+    @Test
+    public void failsEveryRequestWhenBatchFails() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        HttpBatcher httpBatcher = new HttpBatcher(mServer.url("/batch").toString(), new LineBatchEnvelope());
+        httpBatcher.setWindow(TimeUnit.MINUTES.toMillis(1));
+
+        RecordingCallBack callBack = new RecordingCallBack(3);
+        for (int i = 0; i < 3; i++) {
+            httpBatcher.get(params(i), callBack);
+        }
+        httpBatcher.flush();
+
+        assertTrue(callBack.await());
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(3, callBack.mFails.size());
+    }
+
+    private IHttpParams params(int index) {
+        TestParams testParams = new TestParams();
+        testParams.setHttpUrl(mServer.url("/item/" + index).toString());
+        testParams.setTag(index);
+        testParams.setAsyncBack(true);
+        return testParams;
+    }
+
+    /***
+     * 按请求体中每行的url返回 200 body<序号>
+     */
+    private static class EchoDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            StringBuilder sb = new StringBuilder();
+            for (String line : request.getBody().clone().readUtf8().split("\n")) {
+                sb.append("200 body").append(line.substring(line.lastIndexOf('/') + 1)).append('\n');
+            }
+            return new MockResponse().setBody(sb.toString());
+        }
+    }
+
+    /***
+     * 每行一个请求/响应, 不依赖android.util.JsonWriter
+     */
+    private static class LineBatchEnvelope implements BatchEnvelope {
+
+        @Override
+        public RequestBody encode(List<BatchRequest> batchRequests) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (BatchRequest batchRequest : batchRequests) {
+                sb.append(batchRequest.getMethod()).append(' ')
+                        .append(batchRequest.getHttpParams().getHttpUrl()).append('\n');
+            }
+            return RequestBody.create(MediaType.parse("text/plain"), sb.toString());
+        }
+
+        @Override
+        public List<BatchResponse> decode(BufferedSource source, MediaType contentType) throws IOException {
+            List<BatchResponse> batchResponses = new ArrayList<>();
+            String line;
+            while (null != (line = source.readUtf8Line())) {
+                int index = line.indexOf(' ');
+                batchResponses.add(new BatchResponse(Integer.parseInt(line.substring(0, index)), null, line.substring(index + 1)));
+            }
+            return batchResponses;
+        }
+    }
+
+    private static class RecordingCallBack implements IHttpCallBack {
+        final Map<Object, String> mBodies = new ConcurrentHashMap<>();
+        final Map<Object, String> mFails = new ConcurrentHashMap<>();
+        private final CountDownLatch mLatch;
+
+        RecordingCallBack(int count) {
+            mLatch = new CountDownLatch(count);
+        }
+
+        boolean await() throws InterruptedException {
+            return mLatch.await(10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onSuccess(IHttpParams httpParams, String body) {
+            mBodies.put(httpParams.getTag(), body);
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onFail(IHttpParams httpParams, String message) {
+            mFails.put(httpParams.getTag(), String.valueOf(message));
+            mLatch.countDown();
+        }
+
+        @Override
+        public void onBefore(IHttpParams httpParams) {
+
+        }
+
+        @Override
+        public void onProgress(IHttpParams httpParams, long bytesRead, long contentLength, boolean finish) {
+
+        }
+
+        @Override
+        public void onAfter(IHttpParams httpParams) {
+
+        }
+    }
+
+    private static class TestParams extends IHttpParams {
+    }
+}
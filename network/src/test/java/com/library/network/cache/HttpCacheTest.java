@@ -0,0 +1,93 @@
+package com.library.network.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 按请求指定的有效期改写缓存
+ * Created by admin on 2017/1/12.
+ */
+public class HttpCacheTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+
+    private OkHttpClient mOkHttpClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        HttpCache httpCache = new HttpCache();
+        mOkHttpClient = new OkHttpClient.Builder()
+                .cache(new Cache(mTemporaryFolder.newFolder(), 1024 * 1024))
+                .addNetworkInterceptor(httpCache.getMaxAgeInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void rewritesMaxAgeOfFullResponse() throws IOException {
+        mServer.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setBody("a"));
+
+        assertEquals("a", execute("60"));
+        Response response = mOkHttpClient.newCall(request(null)).execute();
+        assertEquals("a", response.body().string());
+        assertNotNull(response.cacheResponse());
+        assertNull(response.networkResponse());
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void rewritesMaxAgeOfNotModifiedResponse() throws Exception {
+        mServer.enqueue(new MockResponse().setHeader("ETag", "v1").setHeader("Cache-Control", "max-age=0").setBody("a"));
+        mServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "v1").setHeader("Cache-Control", "max-age=0"));
+
+        //有效期为0, 下一次请求需要验证
+        assertEquals("a", execute("0"));
+        //服务器返回304, 缓存的有效期应按请求改为60秒
+        assertEquals("a", execute("60"));
+        assertEquals(2, mServer.getRequestCount());
+        mServer.takeRequest();
+        assertEquals("v1", mServer.takeRequest().getHeader("If-None-Match"));
+
+        Response response = mOkHttpClient.newCall(request(null)).execute();
+        assertEquals("a", response.body().string());
+        assertNull(response.networkResponse());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    private String execute(String maxAge) throws IOException {
+        return mOkHttpClient.newCall(request(maxAge)).execute().body().string();
+    }
+
+    private Request request(String maxAge) {
+        Request.Builder builder = new Request.Builder().url(mServer.url("/data"));
+        if (null != maxAge) {
+            builder.header("X-Cache-Max-Age", maxAge);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.library.network.utils;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 参数编码, 以及1~500个参数时和原来逐个indexOf拼接的对比
+ * Created by admin on 2017/1/12.
+ */
+public class HttpUrlUtilsTest {
+
+    private static final int[] PARAM_COUNTS = {1, 10, 100, 500};
+
+    @Test
+    public void encodesQueryParams() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("keyword", "手机 & 平板");
+        params.put("page", 2);
+        params.put("empty", null);
+        HttpUrl httpUrl = HttpUrlUtils.buildUrl("http://host/search?sort=price", params);
+        assertEquals("price", httpUrl.queryParameter("sort"));
+        assertEquals("手机 & 平板", httpUrl.queryParameter("keyword"));
+        assertEquals("2", httpUrl.queryParameter("page"));
+        assertEquals(3, httpUrl.querySize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidUrl() {
+        HttpUrlUtils.buildUrl("host/search", null);
+    }
+
+    @Test
+    public void encodesFormParams() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("a b", "1=2&3");
+        params.put("c", "中文");
+        params.put("d", null);
+        assertEquals("a+b=1%3D2%263&c=%E4%B8%AD%E6%96%87", HttpUrlUtils.encodeParams(params));
+    }
+
+    @Test
+    public void benchmarkParamCounts() {
+        for (int count : PARAM_COUNTS) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                params.put("filter" + i, "value" + i);
+            }
+            int iterations = Math.max(20, 20000 / count);
+            HttpUrl expected = legacyBuildUrl("http://host/search", params);
+            assertEquals(expected, HttpUrlUtils.buildUrl("http://host/search", params));
+            long legacy = nanosPerBuild(true, params, iterations);
+            long current = nanosPerBuild(false, params, iterations);
+            System.out.println("HttpUrlUtils.buildUrl " + count + " params: indexOf " + legacy + " ns, builder " + current + " ns");
+            assertTrue(current > 0 && legacy > 0);
+        }
+    }
+
+    private static long nanosPerBuild(boolean legacy, Map<String, Object> params, int iterations) {
+        int size = 0;
+        //预热一轮, 计时一轮
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                HttpUrl httpUrl = legacy ? legacyBuildUrl("http://host/search", params) : HttpUrlUtils.buildUrl("http://host/search", params);
+                size += httpUrl.querySize();
+            }
+            if (round == 1) {
+                assertTrue(size > 0);
+                return (System.nanoTime() - start) / iterations;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    /***
+     * 原来createGetRequest的拼接方式: 每个参数都重新查找"?", 不编码
+     */
+    private static HttpUrl legacyBuildUrl(String url, Map<String, Object> params) {
+        StringBuffer stringBuffer = new StringBuffer(url);
+        for (Map.Entry<String, Object> map : params.entrySet()) {
+            int index = stringBuffer.indexOf("?");
+            if (index > -1) {
+                stringBuffer.append("&");
+            } else {
+                stringBuffer.append("?");
+            }
+            stringBuffer.append(map.getKey()).append("=").append(map.getValue().toString());
+        }
+        return HttpUrl.parse(stringBuffer.toString());
+    }
+}